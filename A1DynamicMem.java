@@ -3,6 +3,8 @@
 // Does not implement defragment (which is for A2).
 
 public class A1DynamicMem extends DynamicMem {
+
+    protected TreeIterator scan = new TreeIterator();  // Reused by the scans of tree dictionaries
       
     public A1DynamicMem() {
         super();
@@ -16,11 +18,30 @@ public class A1DynamicMem extends DynamicMem {
         super(size, dict_type);
     }
 
+    public A1DynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+    }
+
+    public A1DynamicMem(int size, int dict_type, int alloc_type, int storage) {
+        super(size, dict_type, alloc_type, storage);
+    }
+
     public void Defragment() {
         return ;
     }
 
+    // Every block handed out is in allocBlk, and every block in freeBlk is free.
+    protected boolean keepsBlocksInDictionaries() {
+        return true;
+    }
+
     public void showBlock(Dictionary d){
+        if(d instanceof Tree){
+            for(Tree current = scan.first((Tree)d); current != null; current = scan.next()){
+                System.out.println(current.address+" "+current.size+" "+current.key);
+            }
+            return;
+        }
         Dictionary current;
         for( current = d.getFirst(); current != null; current = current.getNext()){
             System.out.println(current.address+" "+current.size+" "+current.key);
@@ -36,12 +57,12 @@ public class A1DynamicMem extends DynamicMem {
         if(blockSize <= 0) return -1;
         Dictionary match = freeBlk.Find(blockSize, false);
         if(match == null) return -1;
-        allocBlk.Insert(match.address, blockSize, match.address);
-        if(match.size > blockSize){
-            freeBlk.Insert(match.address+blockSize, match.size-blockSize, match.size-blockSize);
+        int val = match.address, size = match.size;
+        freeBlk.DeleteNode(match);          // Before the Insert below, which moves the cursor of a cursor dictionary
+        allocated(val, blockSize);
+        if(size > blockSize){
+            freeBlk.Insert(val+blockSize, size-blockSize, size-blockSize);
         }
-        int val = match.address;
-        freeBlk.Delete(match);
         return val;
     } 
     // return 0 if successful, -1 otherwise
@@ -49,7 +70,27 @@ public class A1DynamicMem extends DynamicMem {
         Dictionary match = allocBlk.Find(startAddr, true);
         if(match == null) return -1;
         freeBlk.Insert(match.address, match.size, match.size);
-        allocBlk.Delete(match);
+        allocBlk.DeleteNode(match);
         return 0;
     }
-}
\ No newline at end of file
+
+    // Records a block handed out by Allocate. Subclasses which keep some allocated blocks outside allocBlk override it.
+    protected void allocated(int address, int blockSize) {
+        allocBlk.Insert(address, blockSize, address);
+    }
+
+    // Replaces the element of the block allocated at startAddr in allocBlk by one of size newSize.
+    protected void resizeAllocated(int startAddr, int newSize) {
+        allocBlk.DeleteNode(allocBlk.Find(startAddr, true));
+        allocBlk.Insert(startAddr, newSize, startAddr);
+    }
+
+    // The tail is inserted into freeBlk as Free would, and is only merged with its neighbours by Defragment.
+    // freeBlk is indexed by size, so the block after a block cannot be found: growInPlace keeps the default, and a
+    // grow always moves the block.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        resizeAllocated(startAddr, newSize);
+        freeBlk.Insert(startAddr + newSize, size - newSize, size - newSize);
+        return true;
+    }
+}
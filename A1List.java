@@ -5,6 +5,7 @@ public class A1List extends List {
 
     private A1List  next; // Next Node
     private A1List prev;  // Previous Node 
+    private NodePool pool; // Pool of deleted nodes, shared by all the nodes of the list
 
     public A1List(int address, int size, int key) { 
         super(address, size, key);
@@ -18,13 +19,28 @@ public class A1List extends List {
         
         this.next = tailSentinel;
         tailSentinel.prev = this;
+        this.pool = tailSentinel.pool = new NodePool();
+    }
+
+    // Returns the pool of deleted nodes of this list, to tune its capacity or read its hit/miss counters.
+    public NodePool getPool(){
+        return pool;
     }
 
     public A1List Insert(int address, int size, int key)
     {
         if(this.next == null) return null;
         // Assert: this != tail sentinel as it can never be accessed from the outside
-        A1List newnode = new A1List(address, size, key); 
+        A1List newnode = (pool != null) ? (A1List)pool.take() : null;
+        if(newnode == null){
+            newnode = new A1List(address, size, key);
+            newnode.pool = pool;
+        }
+        else{
+            newnode.address = address;
+            newnode.size = size;
+            newnode.key = key;
+        }
         newnode.next = this.next;
         newnode.prev = this;
         this.next.prev = newnode;
@@ -32,6 +48,15 @@ public class A1List extends List {
         return newnode;
     }
 
+    // Removes this node from the list and hands it to the pool for reuse. TC => O(1)
+    private void unlink(){
+        this.prev.next = this.next;
+        this.next.prev = this.prev;
+        this.key = this.size = this.address = 0;
+        this.prev = this.next = null;
+        if(pool != null) pool.give(this);
+    }
+
     public boolean Delete(Dictionary d) 
     {
         if(d == null) return false;
@@ -39,10 +64,7 @@ public class A1List extends List {
         for( current = this.getFirst(); current != null; current = current.getNext()){
             if(current.key == d.key){
                 if((current.address == d.address) && (current.size == d.size)){
-                    current.prev.next = current.next;
-                    current.next.prev = current.prev;
-                    current.key = current.size = current.address = 0;
-                    current.prev = current.next = null;
+                    current.unlink();
                     return true;
                 }    
             }
@@ -51,6 +73,16 @@ public class A1List extends List {
         return false;
     }
 
+    // Deletes the element d directly, without scanning the list for it. d must be a node of this list. TC => O(1)
+    public boolean DeleteNode(Dictionary d)
+    {
+        if(!(d instanceof A1List)) return false;
+        A1List node = (A1List)d;
+        if((node.prev == null) || (node.next == null) || (node.prev.next != node)) return false;   // Sentinel or detached node
+        node.unlink();
+        return true;
+    }
+
     public A1List Find(int k, boolean exact)
     { 
         A1List current;
@@ -1,7 +1,18 @@
+import java.util.Arrays;
+
 // Class: A2DynamicMem
 // Implements Degragment in A2. No other changes should be needed for other functions.
 
 public class A2DynamicMem extends A1DynamicMem {
+
+    // State of the incremental defragmentation pass (see DefragmentStep)
+    private Dictionary collecting;  // Free blocks left to collect by the current pass, indexed by size
+    private Dictionary byAddr;      // Free blocks collected by the current pass, indexed by address
+    private Dictionary bySize;      // The same blocks as byAddr, indexed by size, for Allocate
+    private int defragPhase;        // 0 -- no pass running; 1 -- collecting into byAddr; 2 -- merging into freeBlk
+    private int defragProcessed;    // Blocks processed by the current pass
+    private int defragPending;      // Blocks currently held in byAddr
+    private Dictionary probe = new A1List(0, 0, 0);     // Detached element, used to delete a block by value
       
     public A2DynamicMem() {  super(); }
 
@@ -9,49 +20,190 @@ public class A2DynamicMem extends A1DynamicMem {
 
     public A2DynamicMem(int size, int dict_type) { super(size, dict_type); }
 
+    public A2DynamicMem(int size, int dict_type, int alloc_type) { super(size, dict_type, alloc_type); }
+
+    public A2DynamicMem(int size, int dict_type, int alloc_type, int storage) {
+        super(size, dict_type, alloc_type, storage);
+    }
+
     // In A2, you need to test your implementation using BSTrees and AVLTrees. 
     // No changes should be required in the A1DynamicMem functions. 
     // They should work seamlessly with the newly supplied implementation of BSTrees and AVLTrees
     // For A2, implement the Defragment function for the class A2DynamicMem and test using BSTrees and AVLTrees. 
     //Your BST (and AVL tree) implementations should obey the property that keys in the left subtree <= root.key < keys in the right subtree. How is this total order between blocks defined? It shouldn't be a problem when using key=address since those are unique (this is an important invariant for the entire assignment123 module). When using key=size, use address to break ties i.e. if there are multiple blocks of the same size, order them by address. Now think outside the scope of the allocation problem and think of handling tiebreaking in blocks, in case key is neither of the two. 
+    // A running incremental pass is abandoned: the blocks it holds are merged together with those of freeBlk.
     public void Defragment() {
-        Dictionary newTree;
-        Dictionary finalTree;
-        if(type == 2){
-            newTree = new BSTree();
-            finalTree = new BSTree();
-        }
-        else if(type == 3){
-            newTree = new AVLTree();
-            finalTree = new AVLTree();
-        }
-        else return;
-        Dictionary current = freeBlk.getFirst();
-        if((current == null) || (current.getNext() == null)) return;   
-        // Assert : freeBlk has more than 1 element
-        for( ; current != null ; current = current.getNext()){
-            newTree.Insert(current.address, current.size, current.address);
-        }
-        current = newTree.getFirst().getNext();
-        Dictionary last = newTree.getFirst();
-        while(current != null){
-            if(last.address+last.size == current.address){
-                int la = last.address, ls = last.size, cs = current.size;
-                newTree.Delete(current);
-                newTree.Delete(last);
-                last = newTree.Insert(la, ls+cs, la);
-                current = last.getNext();
+        if(!(freeBlk instanceof Tree)) return;
+        // Each block is packed in a long as (address, size), so that sorting the array sorts the blocks by address.
+        long blocks[] = new long[64];
+        int n = 0;
+        Dictionary sources[] = {freeBlk, collecting, byAddr};          // The last two are null if no pass is running
+        for(Dictionary source : sources){
+            if(source == null) continue;
+            for(Tree current = scan.first((Tree)source); current != null ; current = scan.next()){
+                if(n == blocks.length) blocks = Arrays.copyOf(blocks, 2*n);
+                blocks[n++] = ((long)current.address << 32) | current.size;
             }
+        }
+        if(defragPhase != 0) endPass();
+        Arrays.sort(blocks, 0, n);
+        // Single merge pass over the blocks in address order. The merged blocks are repacked as (size, address),
+        // which is the order of the final tree indexed by size.
+        int m = 0;
+        int la = (n > 0) ? (int)(blocks[0] >>> 32) : -1, ls = (n > 0) ? (int)blocks[0] : 0;
+        for(int i = 1; i <= n; i++){
+            int ca = (i < n) ? (int)(blocks[i] >>> 32) : -1;
+            int cs = (i < n) ? (int)blocks[i] : 0;
+            if(la+ls == ca) ls += cs;
             else{
-                last = current;
-                current = current.getNext();
+                blocks[m++] = ((long)ls << 32) | la;
+                la = ca;
+                ls = cs;
             }
-        } 
-        for( current = newTree.getFirst(); current != null; current = current.getNext()){
-            finalTree.Insert(current.address, current.size, current.size);
         }
+        Arrays.sort(blocks, 0, m);
+        int address[] = new int[m], size[] = new int[m];
+        for(int i = 0; i < m; i++){
+            size[i] = (int)(blocks[i] >>> 32);
+            address[i] = (int)blocks[i];
+        }
+        Tree finalTree = (Tree)newDictionary(type);
+        finalTree.Build(address, size, size, m);        // key = size
         freeBlk = finalTree;
-        newTree = finalTree = null;
         return ;
     }
-}
\ No newline at end of file
+
+    // Blocks held by a running incremental pass are not in freeBlk, so they are invisible to the search of A1DynamicMem.
+    // Before giving up, the request is served from them. TC => O(logn) more.
+    @Override
+    public int Allocate(int blockSize) {
+        int address = super.Allocate(blockSize);
+        if((address == -1) && (blockSize > 0) && (defragPhase != 0)){
+            address = allocateHeld(collecting, null, blockSize);
+            if(address == -1) address = allocateHeld(bySize, byAddr, blockSize);
+        }
+        return address;
+    }
+
+    // Allocates blockSize from the smallest large enough block of sizes, a dictionary of the pass indexed by size,
+    // whose blocks are also in addresses (indexed by address) unless it is null. The rest of the block stays in both.
+    // Returns -1 if no block is large enough. TC => O(logn).
+    private int allocateHeld(Dictionary sizes, Dictionary addresses, int blockSize){
+        Dictionary match = sizes.Find(blockSize, false);
+        if(match == null) return -1;
+        int address = match.address, size = match.size;
+        sizes.DeleteNode(match);
+        if(addresses != null){
+            probe.address = probe.key = address;
+            probe.size = size;
+            addresses.Delete(probe);
+        }
+        if(size > blockSize){
+            sizes.Insert(address+blockSize, size-blockSize, size-blockSize);
+            if(addresses != null) addresses.Insert(address+blockSize, size-blockSize, address+blockSize);
+        }
+        else if(addresses != null) defragPending--;
+        allocated(address, blockSize);
+        return address;
+    }
+
+    // Removes the block (address, size) from byAddr and bySize.
+    private void removeHeld(int address, int size){
+        probe.address = probe.key = address;
+        probe.size = size;
+        byAddr.Delete(probe);
+        probe.key = size;
+        bySize.Delete(probe);
+    }
+
+    // Drops the state of the running pass.
+    private void endPass(){
+        collecting = byAddr = bySize = null;
+        defragPhase = 0;
+    }
+
+    // Incremental version of Defragment. Does at most maxBlocks units of work of the current pass (starting a new pass
+    // if none is running) and returns true once the pass is complete.
+    // A pass starts by taking over freeBlk as the blocks to collect (collecting), and giving Free an empty freeBlk.
+    // It has two phases:
+    //     1. Collect: blocks are moved one at a time from collecting into byAddr, a tree indexed by address.
+    //     2. Merge: the first block of byAddr is merged with the next one if they are contiguous (the merged block
+    //        stays in byAddr), otherwise it is moved back into freeBlk, which is indexed by size.
+    // Every unit is O(log n), so a call is bounded by its budget. A pass works on the blocks which were free when it
+    // started, so it ends after at most two units per block, however many blocks are freed meanwhile; those are
+    // merged by the next pass. Allocate and Free stay correct between calls: Free inserts into freeBlk as usual, and
+    // Allocate falls back on the blocks held by the pass (bySize mirrors byAddr by size) in O(log n).
+    public boolean DefragmentStep(int maxBlocks) {
+        return DefragmentStep(maxBlocks, Long.MAX_VALUE);
+    }
+
+    // Same as DefragmentStep(maxBlocks), also stopping once maxNanos nanoseconds have elapsed.
+    public boolean DefragmentStep(int maxBlocks, long maxNanos) {
+        if(!(freeBlk instanceof Tree)) return true;
+        long startTime = System.nanoTime();
+        if(defragPhase == 0){
+            collecting = freeBlk;
+            freeBlk = newDictionary(type);
+            byAddr = newDictionary(type);
+            bySize = newDictionary(type);
+            defragPhase = 1;
+            defragProcessed = defragPending = 0;
+        }
+        for(int done = 0; done < maxBlocks; done++){
+            if((done > 0) && (System.nanoTime() - startTime >= maxNanos)) break;
+            if(defragPhase == 1){
+                Dictionary current = collecting.getFirst();
+                if(current == null){
+                    defragPhase = 2;
+                    done--;             // Switching phase is not a unit of work
+                    continue;
+                }
+                int ca = current.address, cs = current.size;
+                collecting.DeleteNode(current);
+                byAddr.Insert(ca, cs, ca);
+                bySize.Insert(ca, cs, cs);
+                defragPending++;
+            }
+            else{
+                Dictionary first = byAddr.getFirst();
+                if(first == null){
+                    endPass();
+                    return true;
+                }
+                int fa = first.address, fs = first.size;
+                Dictionary next = first.getNext();      // A cursor dictionary moves first itself to the next entry
+                if((next != null) && (fa + fs == next.address)){
+                    int na = next.address, ns = next.size;
+                    removeHeld(na, ns);
+                    removeHeld(fa, fs);
+                    byAddr.Insert(fa, fs+ns, fa);
+                    bySize.Insert(fa, fs+ns, fs+ns);
+                }
+                else{
+                    removeHeld(fa, fs);
+                    freeBlk.Insert(fa, fs, fs);
+                }
+                defragPending--;
+            }
+            defragProcessed++;
+        }
+        return false;
+    }
+
+    // Phase of the incremental pass: 0 -- no pass running; 1 -- collecting; 2 -- merging
+    public int DefragmentPhase() {
+        return defragPhase;
+    }
+
+    // Number of blocks processed so far by the running incremental pass.
+    public int DefragmentProcessed() {
+        return defragProcessed;
+    }
+
+    // Number of merge steps left in the running pass, 0 if no pass is running.
+    // While collecting, the number of blocks left in freeBlk is not known, and -1 is returned.
+    public int DefragmentRemaining() {
+        if(defragPhase == 1) return -1;
+        return defragPending;
+    }
+}
@@ -8,6 +8,8 @@ public class AVLTree extends BSTree {
     private AVLTree left, right;     // Children. 
     private AVLTree parent;          // Parent pointer. 
     private int height;  // The height of the subtree
+    private int maxSize; // The largest size in the subtree, used to search by size in a tree indexed by address
+    private AVLTree tree;            // The sentinel node of the tree, null for a detached node
         
     public AVLTree() { 
         super();
@@ -15,12 +17,14 @@ public class AVLTree extends BSTree {
         // How to identify a sentinel node: A node with parent == null is SENTINEL NODE
         // The actual tree starts from one of the child of the sentinel node !.
         // CONVENTION: Assume right child of the sentinel node holds the actual root! and left child will always be null.
-        
+        // Every node of the tree points to the sentinel, so that the root is reached without walking up the tree.
+        tree = this;
     }
 
     public AVLTree(int address, int size, int key) { 
         super(address, size, key);
         this.height = 0;
+        this.maxSize = size;
     }
 
     // Implement the following functions for AVL Trees.
@@ -39,20 +43,20 @@ public class AVLTree extends BSTree {
         return 0;
     }
 
-    // Returns root of AVL Tree when called from any node and null if tree is empty. TC => O(logn)
+    // Returns the sentinel node of the AVL Tree when called from any node (the node itself if it is detached). TC => O(1)
+    private AVLTree sentinel(AVLTree a){
+        return (a.tree != null) ? a.tree : a;
+    }
+
+    // Returns root of AVL Tree when called from any node and null if tree is empty. TC => O(1)
     private AVLTree root(AVLTree a){
-        while(a.parent != null) a = a.parent; 
-        return a.right;
+        return sentinel(a).right;
     }
 
-    // Iteratively updates the heights of all nodes from a to root(a), along the path. TC => O(logn)
-    private void updateHeights(AVLTree a){
-        if(a == null) return;
-        while(a.parent != null){
-            int l = ht(a.left), r = ht(a.right);
-            a.height = Math.max(l, r) + 1;
-            a = a.parent;
-        }
+    // Recomputes the height and the largest size of the subtree of a from its children. TC => O(1)
+    private void update(AVLTree a){
+        a.height = Math.max(ht(a.left), ht(a.right)) + 1;
+        a.maxSize = Math.max(a.size, Math.max(mx(a.left), mx(a.right)));
     }
 
     // Checks if a given node is imbalanced or not. TC => O(1).
@@ -68,20 +72,21 @@ public class AVLTree extends BSTree {
         return a.height;
     }
 
-    // Only called on a node which is imbalanced, rebalances it using some rotation and then updates heights in O(logn).
-    private void rebalance(AVLTree a){
+    //Returns the largest size in the subtree of a given node. TC => O(1)
+    private int mx(AVLTree a){
+        if(a==null) return Integer.MIN_VALUE;
+        return a.maxSize;
+    }
+
+    // Only called on a node which is imbalanced, rebalances it using some rotation and returns the new root of its
+    // subtree. The rotations update the heights of the nodes they move. TC => O(1).
+    private AVLTree rebalance(AVLTree a){
         if(ht(a.left) - ht(a.right) > 1){
-            if(ht(a.left.left) - ht(a.left.right) >= 0) a = rightRotate(a);   // R - R rotate
-            else a = leftRightRotate(a);                                      // L - R rotate
-            a.right.height = Math.max(ht(a.right.left), ht(a.right.right)) + 1;
-            updateHeights(a.left);
-        }
-        else{
-            if(ht(a.right.right) >= ht(a.right.left)) a = leftRotate(a);       // L - L rotate
-            else a = rightLeftRotate(a);                                       // R - L rotate
-            a.left.height = Math.max(ht(a.left.left), ht(a.left.right)) + 1;
-            updateHeights(a.right);
+            if(ht(a.left.left) - ht(a.left.right) >= 0) return rightRotate(a);   // R - R rotate
+            return leftRightRotate(a);                                          // L - R rotate
         }
+        if(ht(a.right.right) >= ht(a.right.left)) return leftRotate(a);          // L - L rotate
+        return rightLeftRotate(a);                                              // R - L rotate
     }
 
     // All 4 rotation functions mentioned below take O(1) time.
@@ -94,6 +99,8 @@ public class AVLTree extends BSTree {
         else a.parent.left = node;
         node.left = a;
         a.parent = node;
+        update(a);
+        update(node);
         return node; 
     }
 
@@ -106,6 +113,8 @@ public class AVLTree extends BSTree {
         else a.parent.left = node;
         node.right = a;
         a.parent = node;
+        update(a);
+        update(node);
         return node;
     }
 
@@ -119,29 +128,68 @@ public class AVLTree extends BSTree {
         return leftRotate(a);
     }
 
-    // Checks for an imbalance on every node on the path from a to its root, and calls rebalance() if required. 
-    // TC => O(logn)
-    private void checkBalance(AVLTree a){
-        if((a == null) || (a.parent == null)) return;
-        if(isImbalanced(a)) rebalance(a);
-        checkBalance(a.parent);
+    // Walks up from a (whose children are up to date) to the root, updating heights and largest sizes and calling
+    // rebalance() on imbalanced nodes. Stops at the first subtree which keeps both its height and its largest size,
+    // since nothing above it can change. TC => O(logn), and O(1) amortized for insertions.
+    private void retrace(AVLTree a){
+        while((a != null) && (a.parent != null)){
+            int h = a.height, m = a.maxSize;
+            update(a);
+            if(isImbalanced(a)) a = rebalance(a);
+            if((a.height == h) && (a.maxSize == m)) return;
+            a = a.parent;
+        }
     }
 
     // De-allocates a deleted node (nullyfying its pointers and setting int values to 0). TC => O(1)
     private void nullify(AVLTree a){
-        a.right = a.left = a.parent = null;
-        a.size = a.address = a.key = a.height = 0;
+        a.right = a.left = a.parent = a.tree = null;
+        a.size = a.address = a.key = a.height = a.maxSize = 0;
     }
 
-    // Helper function for getNext(), called when right subtree of a node is 0. Returns the 1st right ancestor. 
-    // TC => O(logn)
+    // Nullifies a deleted node and hands it to the pool of the sentinel for reuse. TC => O(1)
+    private void recycle(AVLTree sentinel, AVLTree a){
+        nullify(a);
+        if(sentinel.pool != null) sentinel.pool.give(a);
+    }
+
+    // Returns a detached node holding the entry, reusing a node of the pool of the sentinel if there is one. TC => O(1)
+    private AVLTree newNode(AVLTree sentinel, int address, int size, int key){
+        AVLTree node = (sentinel.pool != null) ? (AVLTree)sentinel.pool.take() : null;
+        if(node == null) node = new AVLTree(address, size, key);
+        else{
+            node.address = address;
+            node.size = size;
+            node.key = key;
+            node.maxSize = size;
+        }
+        node.tree = sentinel;
+        return node;
+    }
+
+    // Builds a perfectly balanced subtree out of the sorted entries [lo, hi), sets its heights and returns its root.
+    // TC => O(hi - lo).
+    private AVLTree build(int address[], int size[], int key[], int lo, int hi, AVLTree parent){
+        if(lo >= hi) return null;
+        int mid = (lo + hi) >>> 1;
+        AVLTree node = new AVLTree(address[mid], size[mid], key[mid]);
+        node.parent = parent;
+        node.tree = parent.tree;
+        node.left = build(address, size, key, lo, mid, node);
+        node.right = build(address, size, key, mid+1, hi, node);
+        update(node);
+        return node;
+    }
+
+    // Helper function for getNext(), called when right subtree of a node is 0. Returns the 1st right ancestor, i.e.
+    // the first ancestor reached from its left subtree, and null if there is none (only the sentinel). TC => O(logn)
     private AVLTree firstrightAncestor(){
-        AVLTree current = this;
-        while(current.parent != null){
-            if(compare(current, this) == 1) return current;
-            current = current.parent;
+        AVLTree current = this, p = this.parent;
+        while((p.parent != null) && (p.right == current)){
+            current = p;
+            p = p.parent;
         }
-        return null;
+        return (p.parent != null) ? p : null;
     }
 
     // End of helper functions. Main functions defined below :
@@ -151,28 +199,27 @@ public class AVLTree extends BSTree {
     @Override
     public AVLTree Insert(int address, int size, int key) 
     { 
-        AVLTree newnode = new AVLTree(address, size, key);
-        AVLTree current = this;
-        while(current.parent != null) current = current.parent; 
+        AVLTree current = sentinel(this);
         // Assert: current points at sentinel node
+        AVLTree newnode = newNode(current, address, size, key);
         if(current.right == null){                   // Empty BSTree
             current.right = newnode;
             newnode.parent = current;
-            updateHeights(newnode);
-            checkBalance(newnode);
             return newnode;
         }    
         current = current.right;
         // Assert: current points at root of BSTree
         while(true){
             int com = compare(current, newnode);
-            if(com == 0) return null;             //Node already present in the tree
+            if(com == 0){                         //Node already present in the tree
+                recycle(newnode.tree, newnode);
+                return null;
+            }
             if(com == 1){
                 if(current.left == null){
                     current.left = newnode;
                     newnode.parent = current;
-                    updateHeights(newnode);
-                    checkBalance(newnode);
+                    retrace(current);
                     return newnode;
                 }
                 current = current.left;
@@ -181,8 +228,7 @@ public class AVLTree extends BSTree {
                 if(current.right == null){
                     current.right = newnode;
                     newnode.parent = current;
-                    updateHeights(newnode);
-                    checkBalance(newnode);
+                    retrace(current);
                     return newnode;
                 }
                 current = current.right;
@@ -190,49 +236,54 @@ public class AVLTree extends BSTree {
         }
     }
 
+    // Unlinks the node current from the tree, rebalances from its parent upwards and recycles the node that is removed.
+    // TC => O(logn)
+    private void unlink(AVLTree sentinel, AVLTree current){
+        // When required node has 2 children :
+        if((current.left != null) && (current.right != null)){
+            AVLTree successor = current.getNext();
+            current.key = successor.key; 
+            current.size = successor.size; 
+            current.address = successor.address; 
+            if(successor.parent.right == successor) successor.parent.right = successor.right;
+            else successor.parent.left = successor.right;
+            if(successor.right != null) successor.right.parent = successor.parent;
+            retrace(successor.parent);
+            retrace(current);                       // The size of current changed, and so may its largest size
+            recycle(sentinel, successor);
+        }
+        // When required node has no left child (Can have right child) :
+        else if(current.left == null){
+            if(current.parent.left == current) current.parent.left = current.right;
+            else current.parent.right = current.right;
+            if(current.right != null) current.right.parent = current.parent;  // When current is a leaf node.
+            retrace(current.parent);
+            recycle(sentinel, current);
+        }
+        // When required node has only left child :
+        else if(current.right == null){
+            if(current.parent.left == current) current.parent.left = current.left;
+            else current.parent.right = current.left;
+            current.left.parent = current.parent;
+            retrace(current.parent);
+            recycle(sentinel, current);
+        }
+    }
+
     // Finds and deletes the dictionary element passed as an argument, from the tree, while maintaining the 
     // invariants of an AVL tree, in O(logn) time
     @Override
     public boolean Delete(Dictionary e)
     {
         if(e == null) return false;
-        AVLTree current = root(this);
+        AVLTree sentinel = sentinel(this);
+        AVLTree current = sentinel.right;
         if(current == null) return false;
         // Assert : Tree is non-empty and current points to the actual root of the tree.
         while(current != null){
             if(current.key == e.key){
                 if((current.size == e.size) && (current.address == e.address)){
-                    // When required node has 2 children :
-                    if((current.left != null) && (current.right != null)){
-                        AVLTree successor = current.getNext();
-                        current.key = successor.key; 
-                        current.size = successor.size; 
-                        current.address = successor.address; 
-                        if(successor.parent.right == successor) successor.parent.right = successor.right;
-                        else successor.parent.left = successor.right;
-                        if(successor.right != null) successor.right.parent = successor.parent;
-                        updateHeights(successor.parent);
-                        checkBalance(successor.parent);
-                        nullify(successor);
-                    }
-                    // When required node has no left child (Can have right child) :
-                    else if(current.left == null){
-                        if(current.parent.left == current) current.parent.left = current.right;
-                        else current.parent.right = current.right;
-                        if(current.right != null) current.right.parent = current.parent;  // When current is a leaf node.
-                        updateHeights(current.parent);
-                        checkBalance(current.parent);
-                        nullify(current);
-                    }
-                    // When required node has only left child :
-                    else if(current.right == null){
-                        if(current.parent.left == current) current.parent.left = current.left;
-                        else current.parent.right = current.left;
-                        current.left.parent = current.parent;
-                        updateHeights(current.parent);
-                        checkBalance(current.parent);
-                        nullify(current);
-                    }
+                    unlink(sentinel, current);
                     return true;
                 }
             }
@@ -242,6 +293,18 @@ public class AVLTree extends BSTree {
         }
         return false;
     }
+
+    // Deletes the element d directly, without searching for it from the root. d must be a node of this tree.
+    // Only the rebalancing from d upwards is left. TC => O(logn)
+    @Override
+    public boolean DeleteNode(Dictionary d)
+    {
+        if(!(d instanceof AVLTree)) return false;
+        AVLTree current = (AVLTree)d;
+        if(current.parent == null) return false;            // Sentinel or detached node
+        unlink(sentinel(current), current);
+        return true;
+    }
         
     // Finds and returns a node in the tree with the required key and minimum address (depending on value of exact).
     // TC => O(logn).
@@ -279,6 +342,99 @@ public class AVLTree extends BSTree {
         }
     }
 
+    // Replaces the contents of the tree with n entries sorted by (key, address). The halves of every range differ by at
+    // most one entry, so the result is height balanced without any rotation. TC => O(n).
+    @Override
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        AVLTree current = sentinel(this);
+        // Assert: current points at sentinel node
+        current.right = build(address, size, key, 0, n, current);
+    }
+
+    // Returns the pool of deleted nodes of this tree, to tune its capacity or read its hit/miss counters. TC => O(1).
+    @Override
+    public NodePool getPool()
+    {
+        return sentinel(this).pool;
+    }
+
+    // Returns the first node (in the inorder traversal) of the subtree of a with size >= k, and null if there is none.
+    // The largest size kept in every subtree tells which way to go. TC => O(logn).
+    private AVLTree fitIn(AVLTree a, int k){
+        if(mx(a) < k) return null;
+        // Assert: a.maxSize >= k holds at every step
+        while(true){
+            if(mx(a.left) >= k) a = a.left;
+            else if(a.size >= k) return a;
+            else a = a.right;
+        }
+    }
+
+    // In a tree indexed by address, returns the block with the lowest address among the blocks of size >= k
+    // (first fit), and null if there is none. TC => O(logn).
+    public AVLTree FindFit(int k)
+    {
+        return fitIn(root(this), k);
+    }
+
+    // Same as FindFit(k), among the blocks with key >= from only (next fit). TC => O(logn).
+    public AVLTree FindFit(int k, int from)
+    {
+        AVLTree current = root(this), store = null;
+        boolean inSubtree = false;      // Whether the answer is store itself, or lies in the subtree of store
+        // Along the search path of from, a node with key >= from comes before its right subtree, and both come
+        // before everything seen higher on the path. So the last candidate found on the way down is the answer.
+        while(current != null){
+            if(current.key < from) current = current.right;
+            else{
+                if(current.size >= k){
+                    store = current;
+                    inSubtree = false;
+                }
+                else if(mx(current.right) >= k){
+                    store = current.right;
+                    inSubtree = true;
+                }
+                current = current.left;
+            }
+        }
+        return inSubtree ? fitIn(store, k) : store;
+    }
+
+    // Returns the largest size in the tree, and -1 if it is empty. TC => O(1).
+    public int getMaxSize()
+    {
+        AVLTree root = root(this);
+        if(root == null) return -1;
+        return root.maxSize;
+    }
+
+    // Returns the last element (in the inorder traversal) with key < k, and null if there is none. TC => O(logn).
+    // In a tree indexed by address, this is the block right before address k.
+    public AVLTree FindBefore(int k)
+    {
+        AVLTree current = root(this), store = null;
+        while(current != null){
+            if(current.key < k){
+                store = current;
+                current = current.right;
+            }
+            else current = current.left;
+        }
+        return store;
+    }
+
+    // Nodes of the tree, for TreeIterator. TC => O(1).
+    @Override
+    protected AVLTree rootNode() { return root(this); }
+
+    @Override
+    protected AVLTree leftNode() { return left; }
+
+    @Override
+    protected AVLTree rightNode() { return right; }
+
     // Returns the first element in the inorder traversal of tree. TC => O(logn).
     @Override
     public AVLTree getFirst()
@@ -326,7 +482,9 @@ public class AVLTree extends BSTree {
     private boolean isHeightBalanced(AVLTree a){
         if(a == null) return true;
         // Check if height of node is 1 more than the maximum of height of both children. 
-        if(ht(a) == Math.max(ht(a.left),ht(a.right)) + 1) return false;
+        if(ht(a) != Math.max(ht(a.left),ht(a.right)) + 1) return false;
+        // Check the largest size of the subtree as well.
+        if(a.maxSize != Math.max(a.size, Math.max(mx(a.left), mx(a.right)))) return false;
         // Check if the difference in the heights of both children of node is more than 1 or not.
         if(isImbalanced(a)) return false;
         return (isHeightBalanced(a.left) && isHeightBalanced(a.right));
@@ -348,7 +506,8 @@ public class AVLTree extends BSTree {
         //Assert: No loop in parent pointers from current to sentinel node
         while(current.parent != null) current = current.parent;
         // Assert : current points to sentinel node
-        if(!current.sentinelCheck()) return false;
+        if(!current.sentinelCheck() || (current.tree != current)) return false;
+        AVLTree sentinel = current;
         if(current.right == null) return true;
         //Assert: Non-empty list
         if(current.right.parent != current) return false;
@@ -359,9 +518,11 @@ public class AVLTree extends BSTree {
         //Assert: No loop found in BST and also all the pointers are well set.
         if(current == null) return true;
         AVLTree last = current.getFirst();
+        if(last.tree != sentinel) return false;
         current = last.getNext();
         for( ; current != null; current = current.getNext()){
             if(compare(current, last) != 1) return false;          // BST property not satisfied during inorder traversal.
+            if(current.tree != sentinel) return false;             // Every node must point to the sentinel
             last = current;
         }
         current = root(this);
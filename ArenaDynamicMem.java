@@ -0,0 +1,233 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Class: ArenaDynamicMem
+// Thread-safe allocator splitting Memory into independent arenas, each managed by its own A2DynamicMem and lock.
+// Arena i covers the addresses [base(i), base(i) + arenaSize(i)); all arenas have the same size but the last, which
+// also takes the remainder. Each thread gets a home arena when it first calls the allocator (round robin), and
+// allocates there, so threads with different home arenas never wait for each other.
+// Allocate spills over to the next arenas when the home arena has no block large enough, and defragments the arenas
+// before it fails. Free finds the arena from the address alone.
+// A block larger than an arena spans consecutive arenas i .. j: it takes the free block at the end of arena i, the
+// whole of the arenas in between, and the start of arena j, each piece as one block of its arena. The pieces are
+// found by a scan of the free blocks of each arena after a Defragment, one arena lock at a time; spanning blocks are
+// rare, and serialized by a lock of their own. An arena has at most one spanning block starting in it (in its last
+// free block) and one ending in it (at its address 0), which are recorded by arena, so that Free and BlockSize still
+// find a block from its address.
+// freeBlk and allocBlk of the wrapper itself are left empty.
+
+public class ArenaDynamicMem extends DynamicMem {
+
+    public final static int ARENAS = 4;         // Default number of arenas: fixed, so that the addresses handed out
+                                                // do not depend on the machine
+
+    private A2DynamicMem arenas[];              // arenas[i] manages the addresses base(i) ... as its addresses 0 ...
+    private int arenaSize;                      // Size of every arena but the last
+    private AtomicIntegerArray spanSize;        // spanSize[i] = size of the spanning block starting in arena i, or 0
+    private AtomicIntegerArray spanStart;       // spanStart[i] = its address in arena i
+    private AtomicIntegerArray covered;         // covered[i] = 1 if the block at address 0 of arena i is the last piece
+                                                // of a spanning block starting before it, 0 otherwise
+    private final Object spanLock = new Object();   // Serializes the allocation of spanning blocks
+    private final AtomicInteger nextArena = new AtomicInteger();
+    private final ThreadLocal<Integer> home = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() { return Math.floorMod(nextArena.getAndIncrement(), arenas.length); }
+    };
+
+    public ArenaDynamicMem() { this(M, 1); }
+
+    public ArenaDynamicMem(int size) { this(size, 1); }
+
+    public ArenaDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public ArenaDynamicMem(int size, int dict_type, int alloc_type) {
+        this(size, dict_type, alloc_type, ARENAS);
+    }
+
+    public ArenaDynamicMem(int size, int dict_type, int alloc_type, int count) {
+        super(size, dict_type, alloc_type);
+        freeBlk.Delete(freeBlk.getFirst());     // The memory is managed by the arenas instead
+        count = Math.max(1, Math.min(count, size));
+        arenaSize = size / count;
+        arenas = new A2DynamicMem[count];
+        spanSize = new AtomicIntegerArray(count);
+        spanStart = new AtomicIntegerArray(count);
+        covered = new AtomicIntegerArray(count);
+        for(int i = 0; i < count; i++){
+            int s = (i < count - 1) ? arenaSize : size - (count - 1) * arenaSize;
+            arenas[i] = new A2DynamicMem(s, dict_type, alloc_type, NO_MEMORY);  // The data is in the wrapper
+        }
+    }
+
+    public int getArenaCount() { return arenas.length; }
+
+    // First address of arena i.
+    public int base(int i) { return i * arenaSize; }
+
+    // Number of addresses of arena i.
+    public int arenaSize(int i) { return (i < arenas.length - 1) ? arenaSize : capacity() - base(i); }
+
+    // Arena holding the address. TC => O(1).
+    private int arenaOf(int address) {
+        return Math.min(address / arenaSize, arenas.length - 1);
+    }
+
+    // Tries the home arena of the thread and then the others in turn, and defragments them one by one before giving up.
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        int first = home.get();
+        for(int k = 0; k < arenas.length; k++){
+            int i = (first + k) % arenas.length;
+            A2DynamicMem arena = arenas[i];
+            int address;
+            synchronized(arena){ address = arena.Allocate(blockSize); }
+            if(address != -1) return base(i) + address;
+        }
+        for(int k = 0; k < arenas.length; k++){
+            int i = (first + k) % arenas.length;
+            if(blockSize > arenaSize(i)) continue;
+            A2DynamicMem arena = arenas[i];
+            int address;
+            synchronized(arena){
+                arena.Defragment();
+                address = arena.Allocate(blockSize);
+            }
+            if(address != -1) return base(i) + address;
+        }
+        return (blockSize > arenaSize) ? allocateSpan(blockSize) : -1;
+    }
+
+    // Allocates the free block of the arena which ends at end, whole, and returns its address, or -1 if the last
+    // address of the arena is not free. The arena must be held. TC => O(n) for n free blocks in the arena.
+    private static int takeTail(A2DynamicMem arena, int end){
+        for(Dictionary d = arena.freeBlk.getFirst(); d != null; d = d.getNext()){
+            if(d.address + d.size != end) continue;
+            int address = d.address, size = d.size;
+            arena.freeBlk.DeleteNode(d);
+            arena.allocBlk.Insert(address, size, address);
+            return address;
+        }
+        return -1;
+    }
+
+    // Allocates the addresses [0, size) of the arena, and returns true, or returns false if they are not all free.
+    // The arena must be held. TC => O(n) for n free blocks in the arena.
+    private static boolean takeHead(A2DynamicMem arena, int size){
+        for(Dictionary d = arena.freeBlk.getFirst(); d != null; d = d.getNext()){
+            if(d.address != 0) continue;
+            if(d.size < size) return false;
+            int rest = d.size - size;
+            arena.freeBlk.DeleteNode(d);
+            if(rest > 0) arena.freeBlk.Insert(size, rest, rest);
+            arena.allocBlk.Insert(0, size, 0);
+            return true;
+        }
+        return false;
+    }
+
+    // Allocates a block larger than an arena over the first run of consecutive arenas i .. j which has room for it:
+    // the last free block of arena i, every address of the arenas in between, and the start of arena j. The pieces
+    // of a run which fails are given back. TC => O(arenas) Defragment calls and scans of the free blocks.
+    private int allocateSpan(int blockSize){
+        synchronized(spanLock){
+            for(int i = 0; i < arenas.length - 1; i++){
+                int start;
+                synchronized(arenas[i]){
+                    arenas[i].Defragment();
+                    start = takeTail(arenas[i], arenaSize(i));
+                }
+                if(start == -1) continue;
+                long need = (long)blockSize - (arenaSize(i) - start);
+                int j = i + 1;
+                while((need > 0) && (j < arenas.length)){
+                    int piece = (int)Math.min(need, arenaSize(j));
+                    boolean taken;
+                    synchronized(arenas[j]){
+                        arenas[j].Defragment();
+                        taken = takeHead(arenas[j], piece);
+                    }
+                    if(!taken) break;
+                    need -= piece;
+                    j++;
+                }
+                if(need <= 0){
+                    for(int k = i + 1; k < j; k++) covered.set(k, 1);
+                    spanStart.set(i, start);
+                    spanSize.set(i, blockSize);
+                    return base(i) + start;
+                }
+                for(int k = i; k < j; k++){
+                    synchronized(arenas[k]){ arenas[k].Free((k == i) ? start : 0); }
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Size of the spanning block starting at startAddr, -1 if startAddr is the start of the last piece of one (which
+    // is not a block), 0 otherwise. TC => O(1).
+    private int spanAt(int startAddr){
+        int i = arenaOf(startAddr), address = startAddr - base(i);
+        if((address == 0) && (covered.get(i) != 0)) return -1;
+        int size = spanSize.get(i);
+        return ((size != 0) && (spanStart.get(i) == address)) ? size : 0;
+    }
+
+    // Frees the pieces of the spanning block of the given size which starts at address start of arena i.
+    // TC => O(arenas it covers).
+    private void freeSpan(int i, int start, int size){
+        synchronized(arenas[i]){ arenas[i].Free(start); }
+        long end = (long)base(i) + start + size;
+        for(int k = i + 1; (k < arenas.length) && (base(k) < end); k++){
+            covered.set(k, 0);
+            synchronized(arenas[k]){ arenas[k].Free(0); }
+        }
+    }
+
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        if((startAddr < 0) || (startAddr >= capacity())) return -1;
+        int span = spanAt(startAddr);
+        if(span == -1) return -1;
+        int i = arenaOf(startAddr);
+        if(span > 0){
+            if(!spanSize.compareAndSet(i, span, 0)) return -1;     // Freed meanwhile by another thread
+            freeSpan(i, startAddr - base(i), span);
+            return 0;
+        }
+        A2DynamicMem arena = arenas[i];
+        synchronized(arena){ return arena.Free(startAddr - base(i)); }
+    }
+
+    public int BlockSize(int startAddr) {
+        if((startAddr < 0) || (startAddr >= capacity())) return -1;
+        int span = spanAt(startAddr);
+        if(span != 0) return span;
+        int i = arenaOf(startAddr);
+        A2DynamicMem arena = arenas[i];
+        synchronized(arena){ return arena.BlockSize(startAddr - base(i)); }
+    }
+
+    // A block never leaves its arena in place, so resizing it in place is done by its arena, under its lock. Spanning
+    // blocks are kept whole on a shrink, and moved on a grow.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        if(spanAt(startAddr) != 0) return false;
+        int i = arenaOf(startAddr);
+        A2DynamicMem arena = arenas[i];
+        synchronized(arena){ return arena.shrinkInPlace(startAddr - base(i), size, newSize); }
+    }
+
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        if(spanAt(startAddr) != 0) return false;
+        int i = arenaOf(startAddr);
+        A2DynamicMem arena = arenas[i];
+        synchronized(arena){ return arena.growInPlace(startAddr - base(i), size, newSize); }
+    }
+
+    // Defragments every arena, each under its own lock.
+    public void Defragment() {
+        for(A2DynamicMem arena : arenas){
+            synchronized(arena){ arena.Defragment(); }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+import java.util.Arrays;
+
+// Class: ArrayAVLTree
+// Height balanced AVL tree, stored as a structure of arrays.
+// The nodes are not objects: node i is described by left[i], right[i], parent[i], height[i], key[i], address[i] and
+// size[i], in parallel primitive arrays. Slot 0 is the nil node (height -1). Slots of deleted nodes are chained through
+// left[] into a free list and reused by later inserts, so a steady stream of inserts and deletes allocates nothing.
+
+// Dictionary elements still have to be returned by Insert, Find, getFirst and getNext. Like HashDictionary, they
+// return a cursor: one ArrayAVLTree per tree, which is moved to the slot found and is valid until the next call on the
+// tree. Deleting through the cursor (Delete/DeleteNode) and the usual traversal loop work as with the other trees:
+//     count = 0; for (d = dict.getFirst(); d != null; d = d.getNext()) count = count + 1;
+// The tree itself is the ArrayAVLTree created by the public constructor, and plays the role of the sentinel node.
+
+public class ArrayAVLTree extends Tree {
+
+    // Storage shared by the tree and its cursor.
+    private static final class Store {
+        int left[], right[], parent[], height[], key[], address[], size[];
+        ArrayAVLTree cursor;        // The element returned by all the functions of this tree
+        int root;                   // Slot of the root, 0 if the tree is empty
+        int freeSlot;               // First slot of the free list, 0 if it is empty
+        int used;                   // Slots handed out so far, including the nil slot
+
+        Store(int capacity){
+            left = new int[capacity];
+            right = new int[capacity];
+            parent = new int[capacity];
+            height = new int[capacity];
+            key = new int[capacity];
+            address = new int[capacity];
+            size = new int[capacity];
+            height[0] = -1;
+            used = 1;
+        }
+    }
+
+    private final Store s;
+    private int slot;               // Slot the cursor points to, 0 for the tree itself and a deleted entry
+
+    public ArrayAVLTree() {
+        super();
+        // This acts as a sentinel: the whole tree is reached from it, and getNext() on it returns null
+        s = new Store(16);
+        slot = 0;
+    }
+
+    private ArrayAVLTree(Store s) {
+        super();
+        this.s = s;
+        this.slot = 0;
+    }
+
+    // Helper functions below :
+
+    // Moves the cursor to slot i and returns it, or returns null for the nil slot. TC => O(1).
+    private ArrayAVLTree cursor(int i){
+        if(i == 0) return null;
+        ArrayAVLTree c = s.cursor;
+        if(c == null) c = s.cursor = new ArrayAVLTree(s);
+        c.slot = i;
+        c.key = s.key[i];
+        c.address = s.address[i];
+        c.size = s.size[i];
+        return c;
+    }
+
+    // Takes a slot from the free list (or a new one, doubling the arrays if needed) and fills it. TC => O(1) amortized.
+    private int newSlot(int address, int size, int key){
+        int i = s.freeSlot;
+        if(i != 0) s.freeSlot = s.left[i];
+        else{
+            if(s.used == s.key.length){
+                int capacity = 2 * s.used;
+                s.left = Arrays.copyOf(s.left, capacity);
+                s.right = Arrays.copyOf(s.right, capacity);
+                s.parent = Arrays.copyOf(s.parent, capacity);
+                s.height = Arrays.copyOf(s.height, capacity);
+                s.key = Arrays.copyOf(s.key, capacity);
+                s.address = Arrays.copyOf(s.address, capacity);
+                s.size = Arrays.copyOf(s.size, capacity);
+            }
+            i = s.used++;
+        }
+        s.left[i] = s.right[i] = s.parent[i] = 0;
+        s.height[i] = 0;
+        s.key[i] = key;
+        s.address[i] = address;
+        s.size[i] = size;
+        return i;
+    }
+
+    // Returns a slot to the free list. TC => O(1).
+    private void freeSlot(int i){
+        s.right[i] = s.parent[i] = 0;
+        s.key[i] = s.address[i] = s.size[i] = s.height[i] = 0;
+        s.left[i] = s.freeSlot;
+        s.freeSlot = i;
+    }
+
+    // Compares the node in slot i with (key, address), ordering by key and then by address. TC => O(1).
+    private int compare(int i, int key, int address){
+        if(s.key[i] > key) return 1;
+        if(s.key[i] < key) return -1;
+        if(s.address[i] > address) return 1;
+        if(s.address[i] < address) return -1;
+        return 0;
+    }
+
+    // Makes b take the place of a as child of p (or as the root if p is nil). TC => O(1).
+    private void replaceChild(int p, int a, int b){
+        if(p == 0) s.root = b;
+        else if(s.left[p] == a) s.left[p] = b;
+        else s.right[p] = b;
+        if(b != 0) s.parent[b] = p;
+    }
+
+    private void updateHeight(int i){
+        s.height[i] = Math.max(s.height[s.left[i]], s.height[s.right[i]]) + 1;
+    }
+
+    // Both rotations take O(1) time and return the new root of the rotated subtree.
+    private int leftRotate(int a){
+        int b = s.right[a];
+        replaceChild(s.parent[a], a, b);
+        s.right[a] = s.left[b];
+        if(s.left[b] != 0) s.parent[s.left[b]] = a;
+        s.left[b] = a;
+        s.parent[a] = b;
+        updateHeight(a);
+        updateHeight(b);
+        return b;
+    }
+
+    private int rightRotate(int a){
+        int b = s.left[a];
+        replaceChild(s.parent[a], a, b);
+        s.left[a] = s.right[b];
+        if(s.right[b] != 0) s.parent[s.right[b]] = a;
+        s.right[b] = a;
+        s.parent[a] = b;
+        updateHeight(a);
+        updateHeight(b);
+        return b;
+    }
+
+    // Updates the height of node a, rotates if it is imbalanced, and returns the root of its subtree. TC => O(1).
+    private int rebalance(int a){
+        updateHeight(a);
+        int l = s.left[a], r = s.right[a];
+        if(s.height[l] - s.height[r] > 1){
+            if(s.height[s.left[l]] < s.height[s.right[l]]) leftRotate(l);
+            return rightRotate(a);
+        }
+        if(s.height[r] - s.height[l] > 1){
+            if(s.height[s.right[r]] < s.height[s.left[r]]) rightRotate(r);
+            return leftRotate(a);
+        }
+        return a;
+    }
+
+    // Restores the AVL invariants on the path from a to the root after an insertion or a deletion below a.
+    // Stops as soon as a subtree keeps its height, since nothing above it can have changed. TC => O(logn).
+    private void retrace(int a){
+        while(a != 0){
+            int old = s.height[a];
+            a = rebalance(a);
+            if(s.height[a] == old) return;
+            a = s.parent[a];
+        }
+    }
+
+    // Unlinks the node in slot z from the tree and frees its slot. TC => O(logn).
+    // The cursor is detached if it points to the deleted entry, and follows the successor's entry if it is moved.
+    private void deleteSlot(int z){
+        ArrayAVLTree c = s.cursor;
+        if((c != null) && (c.slot == z)) c.slot = 0;
+        if((s.left[z] != 0) && (s.right[z] != 0)){
+            // Move the successor's entry into z, and delete the successor's slot instead.
+            int y = s.right[z];
+            while(s.left[y] != 0) y = s.left[y];
+            s.key[z] = s.key[y];
+            s.address[z] = s.address[y];
+            s.size[z] = s.size[y];
+            if((c != null) && (c.slot == y)) c.slot = z;
+            z = y;
+        }
+        int child = (s.left[z] != 0) ? s.left[z] : s.right[z];
+        int p = s.parent[z];
+        replaceChild(p, z, child);
+        freeSlot(z);
+        retrace(p);
+    }
+
+    // Returns the slot of the leftmost node of the subtree of i. TC => O(logn).
+    private int min(int i){
+        if(i == 0) return 0;
+        while(s.left[i] != 0) i = s.left[i];
+        return i;
+    }
+
+    // Builds a perfectly balanced subtree out of the sorted entries [lo, hi) and returns its slot. TC => O(hi - lo).
+    private int build(int address[], int size[], int key[], int lo, int hi, int parent){
+        if(lo >= hi) return 0;
+        int mid = (lo + hi) >>> 1;
+        int i = newSlot(address[mid], size[mid], key[mid]);
+        // The recursive calls may grow the arrays, so their results are stored only once both are done.
+        int l = build(address, size, key, lo, mid, i);
+        int r = build(address, size, key, mid+1, hi, i);
+        s.parent[i] = parent;
+        s.left[i] = l;
+        s.right[i] = r;
+        updateHeight(i);
+        return i;
+    }
+
+    // End of helper functions. Main functions defined below :
+
+    // Inserts the entry, returning null if an entry with the same key and address is already present. TC => O(logn).
+    public ArrayAVLTree Insert(int address, int size, int key)
+    {
+        int p = 0, current = s.root, com = 0;
+        while(current != 0){
+            com = compare(current, key, address);
+            if(com == 0) return null;               // Node already present in the tree
+            p = current;
+            current = (com == 1) ? s.left[current] : s.right[current];
+        }
+        int i = newSlot(address, size, key);
+        s.parent[i] = p;
+        if(p == 0) s.root = i;
+        else if(com == 1) s.left[p] = i;
+        else s.right[p] = i;
+        retrace(p);
+        return cursor(i);
+    }
+
+    // Deletes the entry with the same key, address and size as e. TC => O(logn).
+    public boolean Delete(Dictionary e)
+    {
+        if(e == null) return false;
+        int current = s.root;
+        while(current != 0){
+            int com = compare(current, e.key, e.address);
+            if(com == 0){
+                if(s.size[current] != e.size) return false;
+                deleteSlot(current);
+                return true;
+            }
+            current = (com == 1) ? s.left[current] : s.right[current];
+        }
+        return false;
+    }
+
+    // The cursor already knows its slot, so the entry is deleted without searching for it. TC => O(logn)
+    public boolean DeleteNode(Dictionary d)
+    {
+        if((d == null) || (d != s.cursor) || (slot != 0)) return Delete(d);
+        ArrayAVLTree c = (ArrayAVLTree)d;
+        int i = c.slot;
+        if((i == 0) || (s.key[i] != c.key) || (s.address[i] != c.address) || (s.size[i] != c.size)) return Delete(d);
+        deleteSlot(i);
+        return true;
+    }
+
+    // Same search as AVLTree.Find: the exact search returns the entry with key = k and the smallest address, the
+    // approximate search returns the smallest entry with key >= k. TC => O(logn).
+    public ArrayAVLTree Find(int k, boolean exact)
+    {
+        int current = s.root, store = 0;
+        while(current != 0){
+            if(s.key[current] < k) current = s.right[current];
+            else{
+                if(!exact || (s.key[current] == k)) store = current;
+                current = s.left[current];
+            }
+        }
+        return cursor(store);
+    }
+
+    public ArrayAVLTree getFirst()
+    {
+        return cursor(min(s.root));
+    }
+
+    public ArrayAVLTree getNext()
+    {
+        int current = slot;
+        if(current == 0) return null;                   // getNext() called on the tree itself
+        if(s.right[current] != 0) return cursor(min(s.right[current]));
+        int p = s.parent[current];
+        while((p != 0) && (s.right[p] == current)){
+            current = p;
+            p = s.parent[p];
+        }
+        return cursor(p);
+    }
+
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        s.root = s.freeSlot = 0;
+        s.used = 1;
+        if(s.cursor != null) s.cursor.slot = 0;
+        s.root = build(address, size, key, 0, n, 0);
+    }
+
+    // Checks links, order, heights and balance of every node, and that every slot is either in the tree or in the
+    // free list. TC => O(n).
+    public boolean sanity()
+    {
+        int n = 0;
+        int seen[] = new int[s.used];
+        for(int i = s.freeSlot; i != 0; i = s.left[i]){
+            if((i >= s.used) || (seen[i] != 0)) return false;
+            seen[i] = 1;
+            n++;
+        }
+        if((s.root != 0) && (s.parent[s.root] != 0)) return false;
+        int last = 0;
+        for(int i = min(s.root); i != 0; ){
+            if((i >= s.used) || (seen[i] != 0)) return false;
+            seen[i] = 1;
+            n++;
+            int l = s.left[i], r = s.right[i];
+            if(((l != 0) && (s.parent[l] != i)) || ((r != 0) && (s.parent[r] != i))) return false;
+            if(s.height[i] != Math.max(s.height[l], s.height[r]) + 1) return false;
+            if(Math.abs(s.height[l] - s.height[r]) > 1) return false;
+            if((last != 0) && (compare(i, s.key[last], s.address[last]) != 1)) return false;
+            last = i;
+            if(r != 0) i = min(r);
+            else{
+                int p = s.parent[i];
+                while((p != 0) && (s.right[p] == i)){
+                    i = p;
+                    p = s.parent[p];
+                }
+                i = p;
+            }
+        }
+        return n == s.used - 1;
+    }
+}
@@ -7,9 +7,11 @@ public class BSTree extends Tree {
 
     private BSTree left, right;     // Children.
     private BSTree parent;          // Parent pointer.
+    protected NodePool pool;        // Pool of deleted nodes. Only set in the sentinel node.
         
     public BSTree(){  
         super();
+        pool = new NodePool();
         // This acts as a sentinel root node
         // How to identify a sentinel node: A node with parent == null is SENTINEL NODE
         // The actual tree starts from one of the child of the sentinel node!.
@@ -28,12 +30,30 @@ public class BSTree extends Tree {
         return 0;
     }
 
+    // Returns the pool of deleted nodes of this tree, to tune its capacity or read its hit/miss counters.
+    public NodePool getPool(){
+        BSTree current = this;
+        while(current.parent != null) current = current.parent;
+        return current.pool;
+    }
+
+    // Returns a detached node holding the entry, reusing a node of the pool of the sentinel if there is one.
+    private BSTree newNode(BSTree sentinel, int address, int size, int key){
+        BSTree node = (sentinel.pool != null) ? (BSTree)sentinel.pool.take() : null;
+        if(node == null) return new BSTree(address, size, key);
+        node.address = address;
+        node.size = size;
+        node.key = key;
+        return node;
+    }
+
     public BSTree Insert(int address, int size, int key) 
     { 
-        BSTree newnode = new BSTree(address, size, key);
         BSTree current = this;
         while(current.parent != null) current = current.parent; 
         // Assert: current points at sentinel node
+        BSTree sentinel = current;
+        BSTree newnode = newNode(sentinel, address, size, key);
         if(current.right == null){                   // Empty BSTree
             current.right = newnode;
             newnode.parent = current;
@@ -43,7 +63,10 @@ public class BSTree extends Tree {
         // Assert: current points at root of BSTree
         while(true){
             int com = compare(current, newnode);
-            if(com == 0) return null;             //Node already present in the tree
+            if(com == 0){                         //Node already present in the tree
+                recycle(sentinel, newnode);
+                return null;
+            }
             if(com == 1){
                 if(current.left == null){
                     current.left = newnode;
@@ -63,46 +86,77 @@ public class BSTree extends Tree {
         }
     }
 
+    // Builds a balanced subtree out of the sorted entries [lo, hi) and returns its root. TC => O(hi - lo).
+    private BSTree build(int address[], int size[], int key[], int lo, int hi, BSTree parent){
+        if(lo >= hi) return null;
+        int mid = (lo + hi) >>> 1;
+        BSTree node = new BSTree(address[mid], size[mid], key[mid]);
+        node.parent = parent;
+        node.left = build(address, size, key, lo, mid, node);
+        node.right = build(address, size, key, mid+1, hi, node);
+        return node;
+    }
+
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        BSTree current = this;
+        while(current.parent != null) current = current.parent;
+        // Assert: current points at sentinel node
+        current.right = build(address, size, key, 0, n, current);
+    }
+
     private void nullify(BSTree a){
         a.right = a.left = a.parent = null;
         a.size = a.address = a.key = 0;
     }
 
+    // Nullifies a deleted node and hands it to the pool of the sentinel for reuse.
+    private void recycle(BSTree sentinel, BSTree a){
+        nullify(a);
+        if(sentinel.pool != null) sentinel.pool.give(a);
+    }
+
+    // Unlinks the node current from the tree and recycles the node that is removed.
+    private void unlink(BSTree sentinel, BSTree current){
+        // When required node has 2 children :
+        if((current.left != null) && (current.right != null)){
+            BSTree successor = current.getNext();
+            current.key = successor.key; 
+            current.size = successor.size; 
+            current.address = successor.address; 
+            if(successor.parent.right == successor) successor.parent.right = successor.right;
+            else successor.parent.left = successor.right;
+            if(successor.right != null) successor.right.parent = successor.parent;
+            recycle(sentinel, successor);
+        }
+        // When required node has no left child :
+        else if(current.left == null){
+            if(current.parent.left == current) current.parent.left = current.right;
+            else current.parent.right = current.right;
+            if(current.right != null) current.right.parent = current.parent;
+            recycle(sentinel, current);
+        }
+        // When required node has only left child :
+        else if(current.right == null){
+            if(current.parent.left == current) current.parent.left = current.left;
+            else current.parent.right = current.left;
+            current.left.parent = current.parent;
+            recycle(sentinel, current);
+        }
+    }
+
     public boolean Delete(Dictionary e)
     { 
         if(e == null) return false;
         BSTree current = this;
         while(current.parent != null) current = current.parent;
+        BSTree sentinel = current;
         if(current.right == null) return false;
         current = current.right;
         while(current != null){
             if(current.key == e.key){
                 if((current.size == e.size) && (current.address == e.address)){
-                    // When required node has 2 children :
-                    if((current.left != null) && (current.right != null)){
-                        BSTree successor = current.getNext();
-                        current.key = successor.key; 
-                        current.size = successor.size; 
-                        current.address = successor.address; 
-                        if(successor.parent.right == successor) successor.parent.right = successor.right;
-                        else successor.parent.left = successor.right;
-                        if(successor.right != null) successor.right.parent = successor.parent;
-                        nullify(successor);
-                    }
-                    // When required node has no left child :
-                    else if(current.left == null){
-                        if(current.parent.left == current) current.parent.left = current.right;
-                        else current.parent.right = current.right;
-                        if(current.right != null) current.right.parent = current.parent;
-                        nullify(current);
-                    }
-                    // When required node has only left child :
-                    else if(current.right == null){
-                        if(current.parent.left == current) current.parent.left = current.left;
-                        else current.parent.right = current.left;
-                        current.left.parent = current.parent;
-                        nullify(current);
-                    }
+                    unlink(sentinel, current);
                     return true;
                 }
             }
@@ -111,6 +165,18 @@ public class BSTree extends Tree {
         }
         return false;
     }
+
+    // Deletes the element d directly, without searching for it from the root. d must be a node of this tree.
+    public boolean DeleteNode(Dictionary d)
+    {
+        if(!(d instanceof BSTree)) return false;
+        BSTree current = (BSTree)d;
+        if(current.parent == null) return false;            // Sentinel or detached node
+        BSTree sentinel = current;
+        while(sentinel.parent != null) sentinel = sentinel.parent;
+        unlink(sentinel, current);
+        return true;
+    }
         
     public BSTree Find(int key, boolean exact)
     { 
@@ -155,6 +221,19 @@ public class BSTree extends Tree {
         return current;
     }
 
+    // Nodes of the tree, for TreeIterator. rootNode walks up to the sentinel, TC => O(height); the others are O(1).
+    protected BSTree rootNode(){
+        BSTree current = this;
+        while(current.parent != null) current = current.parent;
+        return current.right;
+    }
+
+    protected BSTree leftNode() { return left; }
+
+    protected BSTree rightNode() { return right; }
+
+    protected boolean isLinked() { return true; }
+
     private BSTree firstRightAncestor(){
         BSTree current = this;
         while((current.parent != null) && (current.parent.right == current)) current = current.parent;
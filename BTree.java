@@ -0,0 +1,506 @@
+// Class: BTree
+// B+-tree implementation of Tree, with wide nodes whose entries are kept in primitive arrays.
+// All entries are in the leaves, in increasing order of (key, address), like the other trees. The leaves are linked
+// from left to right, so getFirst/getNext walk along the arrays of a leaf and then jump to the next leaf, instead of
+// chasing parent and child pointers. An inner node with n children holds n-1 separators: separator i is a lower bound
+// of the entries of child i+1, and is greater than all the entries of child i.
+// Every node but the root has between ORDER/2 and ORDER entries (or children), so the height is O(log n / log ORDER).
+
+// Like HashDictionary and ArrayAVLTree, Insert, Find, getFirst and getNext return a cursor: one BTree per tree, which
+// is moved to the (leaf, position) of the entry found and is valid until the next call on the tree. Entries move when
+// leaves are split, merged or rebalanced, so getNext checks the cursor against its leaf, and falls back on a search by
+// (key, address) from the root if the entry is no longer where the cursor saw it.
+// The tree itself is the BTree created by the public constructor, and plays the role of the sentinel node. The state
+// of the tree is kept apart (State), so that neither the tree nor its cursor carries the fields of the other.
+
+public class BTree extends Tree {
+
+    public final static int ORDER = 64;             // Largest number of entries in a leaf / children of an inner node
+    private final static int MIN = ORDER / 2;       // Smallest number of entries / children of a node but the root
+
+    private static final class Node {
+        int n;                      // Number of entries (leaf) or of children (inner node), 0 once a leaf is merged away
+        int keys[], addresses[];    // Leaf: the entries. Inner node: separators 0 .. n-2
+        int sizes[];                // Leaf only
+        Node children[];            // Inner node only, null for a leaf
+        Node next;                  // Leaf only: the leaf on the right, null for the last one
+
+        Node(boolean leaf){
+            keys = new int[ORDER + 1];          // One extra slot, so that a node can overflow before it is split
+            addresses = new int[ORDER + 1];
+            if(leaf) sizes = new int[ORDER + 1];
+            else children = new Node[ORDER + 1];
+        }
+    }
+
+    // State of a tree, shared by the tree and its cursor.
+    private static final class State {
+        Node root, first;           // The root and the leftmost leaf, null if the tree is empty
+        Node splitNode;             // Node split off by the last insert step, with its lower bound
+        int splitKey, splitAddress;
+        Node hitLeaf;               // Leaf and position found by the last search or insert
+        int hitIndex;
+        int leafCount;              // Used by sanity
+        Node lastLeaf;
+        BTree cursor;               // The element returned by all the functions of this tree, null until needed
+    }
+
+    private final State t;
+    private Node leaf;              // Cursor only: leaf and position of the entry it was moved to, null for the tree
+    private int index;
+
+    public BTree() {
+        super();
+        // This acts as a sentinel: the whole tree is reached from it, and getNext() on it returns null
+        t = new State();
+    }
+
+    private BTree(State t) {
+        super();
+        this.t = t;
+    }
+
+    // Helper functions below :
+
+    // Moves the cursor to entry i of leaf a and returns it, or returns null if a is null. TC => O(1).
+    private BTree cursor(Node a, int i){
+        if(a == null) return null;
+        BTree c = t.cursor;
+        if(c == null) c = t.cursor = new BTree(t);
+        c.leaf = a;
+        c.index = i;
+        c.key = a.keys[i];
+        c.address = a.addresses[i];
+        c.size = a.sizes[i];
+        return c;
+    }
+
+    // Compares (key, address) with entry or separator i of node a, ordering by key and then by address. TC => O(1).
+    private static int compare(int key, int address, Node a, int i){
+        if(key != a.keys[i]) return (key < a.keys[i]) ? -1 : 1;
+        if(address != a.addresses[i]) return (address < a.addresses[i]) ? -1 : 1;
+        return 0;
+    }
+
+    // Number of entries (or separators) of a among the first m that are < (key, address). TC => O(log ORDER).
+    private static int lowerBound(Node a, int m, int key, int address){
+        int lo = 0, hi = m;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(compare(key, address, a, mid) > 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Child of inner node a whose subtree may hold (key, address): one plus the last separator <= it. TC => O(log ORDER).
+    private static int child(Node a, int key, int address){
+        int lo = 0, hi = a.n - 1;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(compare(key, address, a, mid) >= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Sets hitLeaf/hitIndex to the first entry >= (key, address), or hitLeaf to null if there is none. TC => O(logn).
+    private void locate(int key, int address){
+        Node a = t.root;
+        if(a == null){
+            t.hitLeaf = null;
+            return;
+        }
+        while(a.children != null) a = a.children[child(a, key, address)];
+        int i = lowerBound(a, a.n, key, address);
+        // The separators are only bounds, so the entry may be the first one of the next leaf
+        if(i == a.n){
+            a = a.next;
+            i = 0;
+        }
+        t.hitLeaf = a;
+        t.hitIndex = i;
+    }
+
+    // Whether the cursor still describes the entry at its position. TC => O(1).
+    private boolean isValid(){
+        return (leaf != null) && (index < leaf.n) && (leaf.keys[index] == key) && (leaf.addresses[index] == address)
+            && (leaf.sizes[index] == size);
+    }
+
+    // Inserts the entry in the subtree of a. Sets splitNode if a had to be split, and hitLeaf to null if the entry is
+    // already present. TC => O(ORDER * height).
+    private void insert(Node a, int address, int size, int key){
+        t.splitNode = null;
+        if(a.children == null){
+            int i = lowerBound(a, a.n, key, address);
+            if((i < a.n) && (compare(key, address, a, i) == 0)){
+                t.hitLeaf = null;                       // Entry already present in the tree
+                return;
+            }
+            System.arraycopy(a.keys, i, a.keys, i+1, a.n - i);
+            System.arraycopy(a.addresses, i, a.addresses, i+1, a.n - i);
+            System.arraycopy(a.sizes, i, a.sizes, i+1, a.n - i);
+            a.keys[i] = key;
+            a.addresses[i] = address;
+            a.sizes[i] = size;
+            a.n++;
+            t.hitLeaf = a;
+            t.hitIndex = i;
+            if(a.n > ORDER) splitLeaf(a);
+            return;
+        }
+        int c = child(a, key, address);
+        insert(a.children[c], address, size, key);
+        if(t.splitNode == null) return;
+        // The new node becomes child c+1, and its lower bound separator c
+        System.arraycopy(a.children, c+1, a.children, c+2, a.n - c - 1);
+        System.arraycopy(a.keys, c, a.keys, c+1, a.n - c - 1);
+        System.arraycopy(a.addresses, c, a.addresses, c+1, a.n - c - 1);
+        a.children[c+1] = t.splitNode;
+        a.keys[c] = t.splitKey;
+        a.addresses[c] = t.splitAddress;
+        a.n++;
+        t.splitNode = null;
+        if(a.n > ORDER) splitInner(a);
+    }
+
+    // Moves the upper half of an overflowing leaf to a new leaf on its right. TC => O(ORDER).
+    private void splitLeaf(Node a){
+        Node b = new Node(true);
+        int h = a.n / 2;
+        b.n = a.n - h;
+        System.arraycopy(a.keys, h, b.keys, 0, b.n);
+        System.arraycopy(a.addresses, h, b.addresses, 0, b.n);
+        System.arraycopy(a.sizes, h, b.sizes, 0, b.n);
+        a.n = h;
+        b.next = a.next;
+        a.next = b;
+        if((t.hitLeaf == a) && (t.hitIndex >= h)){
+            t.hitLeaf = b;
+            t.hitIndex -= h;
+        }
+        t.splitNode = b;
+        t.splitKey = b.keys[0];
+        t.splitAddress = b.addresses[0];
+    }
+
+    // Moves the upper half of the children of an overflowing inner node to a new node on its right. The separator
+    // between the two halves moves up to the parent. TC => O(ORDER).
+    private void splitInner(Node a){
+        Node b = new Node(false);
+        int h = a.n / 2;
+        b.n = a.n - h;
+        System.arraycopy(a.children, h, b.children, 0, b.n);
+        System.arraycopy(a.keys, h, b.keys, 0, b.n - 1);
+        System.arraycopy(a.addresses, h, b.addresses, 0, b.n - 1);
+        for(int i = h; i < a.n; i++) a.children[i] = null;
+        a.n = h;
+        t.splitNode = b;
+        t.splitKey = a.keys[h-1];
+        t.splitAddress = a.addresses[h-1];
+    }
+
+    // Deletes the entry (key, address) of size size from the subtree of a, and fixes the children of a which fall
+    // below MIN. Returns false if the entry is not found. TC => O(ORDER * height).
+    private boolean delete(Node a, int key, int address, int size){
+        if(a.children == null){
+            int i = lowerBound(a, a.n, key, address);
+            if((i == a.n) || (compare(key, address, a, i) != 0) || (a.sizes[i] != size)) return false;
+            removeEntry(a, i);
+            return true;
+        }
+        int c = child(a, key, address);
+        if(!delete(a.children[c], key, address, size)) return false;
+        if(a.children[c].n < MIN) fix(a, c);
+        return true;
+    }
+
+    private static void removeEntry(Node a, int i){
+        System.arraycopy(a.keys, i+1, a.keys, i, a.n - i - 1);
+        System.arraycopy(a.addresses, i+1, a.addresses, i, a.n - i - 1);
+        System.arraycopy(a.sizes, i+1, a.sizes, i, a.n - i - 1);
+        a.n--;
+    }
+
+    // Removes child c+1 and separator c of the inner node a. TC => O(ORDER).
+    private static void removeChild(Node a, int c){
+        System.arraycopy(a.children, c+2, a.children, c+1, a.n - c - 2);
+        System.arraycopy(a.keys, c+1, a.keys, c, a.n - c - 2);
+        System.arraycopy(a.addresses, c+1, a.addresses, c, a.n - c - 2);
+        a.children[--a.n] = null;
+    }
+
+    // Child c of a has MIN-1 entries or children: borrows one from a sibling which can spare it, or else merges it
+    // with a sibling. TC => O(ORDER).
+    private void fix(Node a, int c){
+        if((c > 0) && (a.children[c-1].n > MIN)) borrowLeft(a, c);
+        else if((c + 1 < a.n) && (a.children[c+1].n > MIN)) borrowRight(a, c);
+        else if(c > 0) merge(a, c-1);
+        else if(c + 1 < a.n) merge(a, c);
+    }
+
+    // Moves the last entry (or child) of child c-1 of a to the front of child c. TC => O(ORDER).
+    private static void borrowLeft(Node a, int c){
+        Node l = a.children[c-1], x = a.children[c];
+        if(x.children == null){
+            System.arraycopy(x.keys, 0, x.keys, 1, x.n);
+            System.arraycopy(x.addresses, 0, x.addresses, 1, x.n);
+            System.arraycopy(x.sizes, 0, x.sizes, 1, x.n);
+            x.keys[0] = l.keys[l.n-1];
+            x.addresses[0] = l.addresses[l.n-1];
+            x.sizes[0] = l.sizes[l.n-1];
+            x.n++;
+            l.n--;
+            a.keys[c-1] = x.keys[0];
+            a.addresses[c-1] = x.addresses[0];
+        }
+        else{
+            // The separator of a comes down in front of x, and the last separator of l goes up in its place
+            System.arraycopy(x.children, 0, x.children, 1, x.n);
+            System.arraycopy(x.keys, 0, x.keys, 1, x.n - 1);
+            System.arraycopy(x.addresses, 0, x.addresses, 1, x.n - 1);
+            x.children[0] = l.children[l.n-1];
+            x.keys[0] = a.keys[c-1];
+            x.addresses[0] = a.addresses[c-1];
+            x.n++;
+            a.keys[c-1] = l.keys[l.n-2];
+            a.addresses[c-1] = l.addresses[l.n-2];
+            l.children[--l.n] = null;
+        }
+    }
+
+    // Moves the first entry (or child) of child c+1 of a to the end of child c. TC => O(ORDER).
+    private static void borrowRight(Node a, int c){
+        Node x = a.children[c], r = a.children[c+1];
+        if(x.children == null){
+            x.keys[x.n] = r.keys[0];
+            x.addresses[x.n] = r.addresses[0];
+            x.sizes[x.n] = r.sizes[0];
+            x.n++;
+            removeEntry(r, 0);
+            a.keys[c] = r.keys[0];
+            a.addresses[c] = r.addresses[0];
+        }
+        else{
+            // The separator of a comes down at the end of x, and the first separator of r goes up in its place
+            x.children[x.n] = r.children[0];
+            x.keys[x.n-1] = a.keys[c];
+            x.addresses[x.n-1] = a.addresses[c];
+            x.n++;
+            a.keys[c] = r.keys[0];
+            a.addresses[c] = r.addresses[0];
+            System.arraycopy(r.children, 1, r.children, 0, r.n - 1);
+            System.arraycopy(r.keys, 1, r.keys, 0, r.n - 2);
+            System.arraycopy(r.addresses, 1, r.addresses, 0, r.n - 2);
+            r.children[--r.n] = null;
+        }
+    }
+
+    // Appends child c+1 of a to child c, and removes it from a. TC => O(ORDER).
+    private static void merge(Node a, int c){
+        Node l = a.children[c], r = a.children[c+1];
+        if(l.children == null){
+            System.arraycopy(r.keys, 0, l.keys, l.n, r.n);
+            System.arraycopy(r.addresses, 0, l.addresses, l.n, r.n);
+            System.arraycopy(r.sizes, 0, l.sizes, l.n, r.n);
+            l.n += r.n;
+            l.next = r.next;
+        }
+        else{
+            l.keys[l.n-1] = a.keys[c];
+            l.addresses[l.n-1] = a.addresses[c];
+            System.arraycopy(r.keys, 0, l.keys, l.n, r.n - 1);
+            System.arraycopy(r.addresses, 0, l.addresses, l.n, r.n - 1);
+            System.arraycopy(r.children, 0, l.children, l.n, r.n);
+            l.n += r.n;
+        }
+        r.n = 0;                    // Invalidates a cursor into r
+        removeChild(a, c);
+    }
+
+    // Groups the nodes of one level into parents with ORDER children at most and MIN at least (unless there is only
+    // one parent), and returns the parents. mk/ma hold the smallest entry of each node and are updated to the parents'.
+    // TC => O(m).
+    private static Node[] group(Node nodes[], int m, int mk[], int ma[]){
+        int count = (m + ORDER - 1) / ORDER;
+        Node parents[] = new Node[count];
+        int j = 0;
+        for(int p = 0; p < count; p++){
+            int take = m / count + ((p < m % count) ? 1 : 0);
+            Node a = parents[p] = new Node(false);
+            int k0 = mk[j], a0 = ma[j];
+            for(int t = 0; t < take; t++, j++){
+                a.children[t] = nodes[j];
+                if(t > 0){
+                    a.keys[t-1] = mk[j];
+                    a.addresses[t-1] = ma[j];
+                }
+            }
+            a.n = take;
+            mk[p] = k0;
+            ma[p] = a0;
+        }
+        return parents;
+    }
+
+    // End of helper functions. Main functions defined below :
+
+    // Inserts the entry, returning null if an entry with the same key and address is already present.
+    // TC => O(ORDER * log n / log ORDER).
+    public BTree Insert(int address, int size, int key)
+    {
+        if(t.root == null) t.root = t.first = new Node(true);
+        insert(t.root, address, size, key);
+        if(t.hitLeaf == null) return null;             // Entry already present in the tree
+        if(t.splitNode != null){
+            Node a = new Node(false);
+            a.children[0] = t.root;
+            a.children[1] = t.splitNode;
+            a.keys[0] = t.splitKey;
+            a.addresses[0] = t.splitAddress;
+            a.n = 2;
+            t.root = a;
+            t.splitNode = null;
+        }
+        return cursor(t.hitLeaf, t.hitIndex);
+    }
+
+    // Deletes the entry with the same key, address and size as e. TC => O(ORDER * log n / log ORDER).
+    public boolean Delete(Dictionary e)
+    {
+        if((e == null) || (t.root == null)) return false;
+        if(!delete(t.root, e.key, e.address, e.size)) return false;
+        Node r = t.root;
+        if((r.children != null) && (r.n == 1)) t.root = r.children[0];
+        else if((r.children == null) && (r.n == 0)) t.root = t.first = null;
+        return true;
+    }
+
+    // Deleting needs the path from the root to rebalance the nodes, so this is a Delete for an element of this tree.
+    public boolean DeleteNode(Dictionary d)
+    {
+        if(!(d instanceof BTree) || (((BTree)d).t != t) || (((BTree)d).leaf == null)) return false;
+        return Delete(d);
+    }
+
+    // The exact search returns the entry with key = k and the smallest address, the approximate search returns the
+    // smallest entry with key >= k. TC => O(log n).
+    public BTree Find(int k, boolean exact)
+    {
+        locate(k, Integer.MIN_VALUE);
+        if(t.hitLeaf == null) return null;
+        if(exact && (t.hitLeaf.keys[t.hitIndex] != k)) return null;
+        return cursor(t.hitLeaf, t.hitIndex);
+    }
+
+    public BTree getFirst()
+    {
+        return cursor(t.first, 0);
+    }
+
+    // TC => O(1) along a leaf, O(log n) if the cursor is out of date.
+    public BTree getNext()
+    {
+        if(leaf == null) return null;                   // getNext() called on the tree itself
+        Node a = leaf;
+        int i = index;
+        if(!isValid()){
+            // Find the first entry after this one, whether it is still in the tree or not
+            locate(key, address);
+            a = t.hitLeaf;
+            i = t.hitIndex;
+            if((a == null) || (compare(key, address, a, i) != 0)) return cursor(a, i);
+        }
+        if(i + 1 < a.n) return cursor(a, i + 1);
+        return cursor(a.next, 0);
+    }
+
+    // Builds the leaves filled as evenly as possible, then the inner levels on top of them. TC => O(n).
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        t.root = t.first = null;
+        if(n == 0) return;
+        int m = (n + ORDER - 1) / ORDER;
+        Node nodes[] = new Node[m];
+        int mk[] = new int[m], ma[] = new int[m];
+        int j = 0;
+        for(int p = 0; p < m; p++){
+            int take = n / m + ((p < n % m) ? 1 : 0);
+            Node a = nodes[p] = new Node(true);
+            System.arraycopy(key, j, a.keys, 0, take);
+            System.arraycopy(address, j, a.addresses, 0, take);
+            System.arraycopy(size, j, a.sizes, 0, take);
+            a.n = take;
+            mk[p] = key[j];
+            ma[p] = address[j];
+            if(p > 0) nodes[p-1].next = a;
+            j += take;
+        }
+        t.first = nodes[0];
+        while(m > 1){
+            nodes = group(nodes, m, mk, ma);
+            m = nodes.length;
+        }
+        t.root = nodes[0];
+    }
+
+    // Checks the order of the entries along the leaves, the separators, the fill of the nodes, that all the leaves
+    // are at the same depth and that they are linked in order. TC => O(n).
+    public boolean sanity()
+    {
+        if(t.root == null) return t.first == null;
+        Node a = t.root;
+        while(a.children != null) a = a.children[0];
+        if(a != t.first) return false;
+        t.leafCount = 0;
+        t.lastLeaf = null;
+        if(check(t.root, true, 0, 0, false, 0, 0, false) < 0) return false;
+        if(t.lastLeaf.next != null) return false;
+        // The leaves reached from the root must be the leaves linked from first
+        int n = 0;
+        for(a = t.first; a != null; a = a.next){
+            n++;
+            if(a.next != null){
+                if(compare(a.next.keys[0], a.next.addresses[0], a, a.n - 1) <= 0) return false;
+            }
+        }
+        return n == t.leafCount;
+    }
+
+    // Checks the subtree of a, whose entries must lie in [lo, hi) (bounds given only if hasLo/hasHi), and returns its
+    // height, -1 if it is not sane. TC => O(size of the subtree).
+    private int check(Node a, boolean isRoot, int loKey, int loAddress, boolean hasLo, int hiKey, int hiAddress,
+                      boolean hasHi){
+        if((a.n > ORDER) || (!isRoot && (a.n < MIN)) || (a.n < 1)) return -1;
+        if(a.children == null){
+            if((t.lastLeaf != null) && (t.lastLeaf.next != a)) return -1;
+            t.lastLeaf = a;
+            t.leafCount++;
+            for(int i = 0; i < a.n; i++){
+                if((i > 0) && (compare(a.keys[i], a.addresses[i], a, i-1) <= 0)) return -1;
+                if(hasLo && (compare(a.keys[i], a.addresses[i], loKey, loAddress) < 0)) return -1;
+                if(hasHi && (compare(a.keys[i], a.addresses[i], hiKey, hiAddress) >= 0)) return -1;
+            }
+            return 0;
+        }
+        if(isRoot && (a.n < 2)) return -1;
+        int height = -1;
+        for(int c = 0; c < a.n; c++){
+            if((c > 1) && (compare(a.keys[c-1], a.addresses[c-1], a, c-2) <= 0)) return -1;
+            boolean cl = hasLo || (c > 0), ch = hasHi || (c < a.n - 1);
+            int lk = (c > 0) ? a.keys[c-1] : loKey, la = (c > 0) ? a.addresses[c-1] : loAddress;
+            int hk = (c < a.n - 1) ? a.keys[c] : hiKey, ha = (c < a.n - 1) ? a.addresses[c] : hiAddress;
+            int h = check(a.children[c], false, lk, la, cl, hk, ha, ch);
+            if((h < 0) || ((height != -1) && (h != height))) return -1;
+            height = h;
+        }
+        return height + 1;
+    }
+
+    private static int compare(int key, int address, int otherKey, int otherAddress){
+        if(key != otherKey) return (key < otherKey) ? -1 : 1;
+        if(address != otherAddress) return (address < otherAddress) ? -1 : 1;
+        return 0;
+    }
+}
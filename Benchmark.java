@@ -0,0 +1,173 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Class: Benchmark
+// Replays an allocation trace on an allocator, once per dictionary type, and prints the time per command.
+//     java Benchmark [-baseline file] [trace [allocator [rounds [dict_type ...]]]]
+// trace is a file in the format of the test cases (see README.md; a command other than Allocate, Free, Reallocate and
+// Defragment is an error), or "random" (the default) for a generated trace of one million commands on a memory of
+// size M. allocator takes the same names as in Driver (default a2). Every dict_type (default 2 3 4 6 7, lists are too
+// slow for the generated trace) replays the trace rounds times (default 5, at least 2); the first round warms up the
+// JIT and is not counted.
+// The generated trace frees blocks mostly in reverse order of allocation, with a few sizes used most of the time, and
+// defragments from time to time.
+// To measure a change, save the output of a run on the tree before it, and pass that file as the baseline of a run
+// after it: each dict_type found in the baseline is then also printed with the speedup of its best time per command.
+
+public class Benchmark {
+
+    // Commands of a trace, one test case after the other: for test case t, memory size size[t] and the commands
+    // start[t] .. start[t+1]-1 of op[] / arg[] (arg2[] is the new size of a Reallocate).
+    private static final int ALLOCATE = 0, FREE = 1, DEFRAGMENT = 2, REALLOCATE = 3;
+    private static int cases;
+    private static int size[], start[], op[], arg[], arg2[];
+    private static boolean generated;   // Whether the free commands give the index of an allocation, see generate
+
+    private static void read(String file) throws FileNotFoundException {
+        Scanner sc = new Scanner(new File(file));
+        cases = sc.nextInt();
+        size = new int[cases];
+        start = new int[cases + 1];
+        int count[] = new int[cases];
+        ArrayList<int[]> commands = new ArrayList<int[]>();
+        for(int t = 0; t < cases; t++){
+            size[t] = sc.nextInt();
+            count[t] = sc.nextInt();
+            for(int i = 0; i < count[t]; i++){
+                String command = sc.next();
+                int argument = sc.nextInt();
+                switch (command) {
+                    case "Allocate":
+                        commands.add(new int[]{ALLOCATE, argument, 0});
+                        break;
+                    case "Free":
+                        commands.add(new int[]{FREE, argument, 0});
+                        break;
+                    case "Reallocate":
+                        commands.add(new int[]{REALLOCATE, argument, sc.nextInt()});
+                        break;
+                    case "Defragment":
+                        commands.add(new int[]{DEFRAGMENT, argument, 0});
+                        break;
+                    default:
+                        throw new IllegalArgumentException(file + ": unknown command " + command);
+                }
+            }
+        }
+        op = new int[commands.size()];
+        arg = new int[commands.size()];
+        arg2 = new int[commands.size()];
+        for(int i = 0; i < commands.size(); i++){
+            op[i] = commands.get(i)[0];
+            arg[i] = commands.get(i)[1];
+            arg2[i] = commands.get(i)[2];
+        }
+        for(int t = 0; t < cases; t++) start[t+1] = start[t] + count[t];
+    }
+
+    private static void generate(int n){
+        Random random = new Random(1);
+        cases = 1;
+        size = new int[]{DynamicMem.M};
+        start = new int[]{0, n};
+        op = new int[n];
+        arg = new int[n];
+        arg2 = new int[n];
+        int live[] = new int[n], count = 0, next = 0;
+        int hot[] = {16, 32, 48, 64, 128};
+        for(int i = 0; i < n; i++){
+            int r = random.nextInt(1000);
+            if((r < 500) || (count == 0)){
+                op[i] = ALLOCATE;
+                arg[i] = (random.nextInt(10) < 8) ? hot[random.nextInt(hot.length)] : 1 + random.nextInt(1024);
+                // The address is only known when the trace is replayed: the free commands refer to allocations by
+                // their index in the trace, and are resolved in replay
+                live[count++] = i;
+            }
+            else if(r < 999){
+                // Mostly the last block allocated, sometimes an older one
+                int j = (random.nextInt(4) != 0) ? count - 1 : random.nextInt(count);
+                op[i] = FREE;
+                arg[i] = live[j];
+                live[j] = live[--count];
+            }
+            else{
+                op[i] = DEFRAGMENT;
+            }
+        }
+        generated = true;
+    }
+
+    // Replays the trace once and returns the elapsed time in nanoseconds.
+    private static long replay(String allocator, int type){
+        long elapsed = 0;
+        int address[] = new int[op.length];
+        for(int t = 0; t < cases; t++){
+            DynamicMem obj = Driver.newAllocator(allocator, size[t], type, type);
+            long begin = System.nanoTime();
+            for(int i = start[t]; i < start[t+1]; i++){
+                if(op[i] == ALLOCATE) address[i] = obj.Allocate(arg[i]);
+                else if(op[i] == FREE) obj.Free(generated ? address[arg[i]] : arg[i]);
+                else if(op[i] == REALLOCATE) obj.Reallocate(arg[i], arg2[i]);
+                else obj.Defragment();
+            }
+            elapsed += System.nanoTime() - begin;
+        }
+        return elapsed;
+    }
+
+    // Reads the best time per command of every dict_type from the output of an earlier run.
+    private static HashMap<Integer, Double> readBaseline(String file) throws FileNotFoundException {
+        HashMap<Integer, Double> baseline = new HashMap<Integer, Double>();
+        Pattern line = Pattern.compile("dict_type (\\d+): .*, ([0-9.]+) ns per command.*");
+        Scanner sc = new Scanner(new File(file));
+        while(sc.hasNextLine()){
+            Matcher m = line.matcher(sc.nextLine());
+            if(m.matches()) baseline.put(Integer.parseInt(m.group(1)), Double.parseDouble(m.group(2)));
+        }
+        return baseline;
+    }
+
+    public static void main(String args[]) throws FileNotFoundException {
+        HashMap<Integer, Double> baseline = new HashMap<Integer, Double>();
+        if((args.length > 1) && args[0].equals("-baseline")){
+            baseline = readBaseline(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        String trace = (args.length > 0) ? args[0] : "random";
+        String allocator = (args.length > 1) ? args[1] : "a2";
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        if(rounds < 2) throw new IllegalArgumentException("rounds must be at least 2, the first one is not counted");
+        int types[] = {2, 3, 4, 6, 7};
+        if(args.length > 3){
+            types = new int[args.length - 3];
+            for(int i = 3; i < args.length; i++) types[i-3] = Integer.parseInt(args[i]);
+        }
+        if(trace.equals("random")) generate(1000000);
+        else read(trace);
+        System.out.println("trace " + trace + ": " + op.length + " commands, allocator " + allocator);
+        for(int type : types){
+            long best = Long.MAX_VALUE, total = 0;
+            replay(allocator, type);
+            for(int r = 1; r < rounds; r++){
+                long t = replay(allocator, type);
+                best = Math.min(best, t);
+                total += t;
+            }
+            int measured = rounds - 1;
+            double perCommand = (double)best / op.length;
+            System.out.printf("dict_type %d: %.1f ms per replay (best %.1f ms), %.1f ns per command",
+                type, total / 1e6 / measured, best / 1e6, perCommand);
+            Double before = baseline.get(type);
+            if(before != null) System.out.printf(" (baseline %.1f ns, speedup x%.2f)", before, before / perCommand);
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Class: BuddyDynamicMem
+// Buddy-system allocator implementing DynamicMem.
+// Memory is managed as power-of-two blocks, each aligned to its own size. A block of size 2^k has order k.
+// A request is rounded up to the next power of two 2^k and served from the free list of order k. If that list is
+// empty, the smallest larger free block is split in halves until a block of order k is obtained.
+// On Free, a block of order k at address a is merged with its buddy at a ^ 2^k for as long as the buddy is free and has
+// the same order. Coalescing therefore costs O(log M) per Free and Defragment has nothing left to do.
+// When the memory size is not a power of two, it is covered by the largest aligned power-of-two blocks that fit.
+
+// Allocated blocks are kept in allocBlk (key = address, size = rounded block size), so Free has the same semantics as
+// in A1DynamicMem. The free blocks are kept in per-order doubly linked lists threaded through arrays indexed by
+// address, and freeBlk is left empty.
+
+public class BuddyDynamicMem extends DynamicMem {
+
+    private int limit;              // Size of the managed memory
+    private int head[];             // head[k] is the address of the first free block of order k, -1 if there is none
+    private int nonEmpty;           // Bit k is set iff the free list of order k is non-empty
+    private int nextFree[];         // nextFree[a] / prevFree[a] link the free block at a in the list of its order
+    private int prevFree[];
+    private byte freeOrder[];       // freeOrder[a] = k+1 if a free block of order k starts at a, 0 otherwise
+
+    public BuddyDynamicMem() { this(M, 1); }
+
+    public BuddyDynamicMem(int size) { this(size, 1); }
+
+    public BuddyDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public BuddyDynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+        freeBlk.Delete(freeBlk.getFirst());     // The initial block is tracked by the order lists instead
+        limit = size;
+        head = new int[32];
+        for(int k = 0; k < 32; k++) head[k] = -1;
+        nextFree = new int[size];
+        prevFree = new int[size];
+        freeOrder = new byte[size];
+        // Cover [0, size) with maximal aligned power-of-two blocks
+        int address = 0;
+        while(address < size){
+            int order = (address == 0) ? 30 : Integer.numberOfTrailingZeros(address);
+            while((order > 0) && ((long)address + (1L << order) > size)) order--;
+            addFree(address, order);
+            address += (1 << order);
+        }
+    }
+
+    // Smallest order k such that 2^k >= blockSize. TC => O(1).
+    private int orderOf(int blockSize){
+        return 32 - Integer.numberOfLeadingZeros(blockSize - 1);
+    }
+
+    // Inserts the block at address at the head of the free list of the given order. TC => O(1).
+    private void addFree(int address, int order){
+        nextFree[address] = head[order];
+        prevFree[address] = -1;
+        if(head[order] != -1) prevFree[head[order]] = address;
+        head[order] = address;
+        freeOrder[address] = (byte)(order + 1);
+        nonEmpty |= (1 << order);
+    }
+
+    // Unlinks the block at address from the free list of the given order. TC => O(1).
+    private void removeFree(int address, int order){
+        int next = nextFree[address], prev = prevFree[address];
+        if(prev != -1) nextFree[prev] = next;
+        else head[order] = next;
+        if(next != -1) prevFree[next] = prev;
+        freeOrder[address] = 0;
+        if(head[order] == -1) nonEmpty &= ~(1 << order);
+    }
+
+    // Returns the start address of a block of at least blockSize addresses, -1 if memory is not available.
+    // TC => O(log M) for the splits, plus one insertion into allocBlk.
+    public int Allocate(int blockSize) {
+        if((blockSize <= 0) || (blockSize > limit)) return -1;
+        int order = orderOf(blockSize);
+        if(order > 30) return -1;
+        int candidates = nonEmpty & (-1 << order);
+        if(candidates == 0) return -1;
+        int j = Integer.numberOfTrailingZeros(candidates);
+        int address = head[j];
+        removeFree(address, j);
+        while(j > order){                      // Split, keeping the lower half and freeing the upper half
+            j--;
+            addFree(address + (1 << j), j);
+        }
+        allocBlk.Insert(address, 1 << order, address);
+        return address;
+    }
+
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        Dictionary match = allocBlk.Find(startAddr, true);
+        if(match == null) return -1;
+        int address = match.address;
+        int order = Integer.numberOfTrailingZeros(match.size);
+        allocBlk.DeleteNode(match);
+        while(true){
+            int buddy = address ^ (1 << order);
+            if(((long)buddy + (1L << order) > limit) || (freeOrder[buddy] != order + 1)) break;
+            removeFree(buddy, order);
+            address = Math.min(address, buddy);
+            order++;
+        }
+        addFree(address, order);
+        return 0;
+    }
+
+    // Buddies are merged eagerly in Free, so there is never anything left to defragment.
+    public void Defragment() {
+        return ;
+    }
+
+    // Every allocated block is in allocBlk, and freeBlk is empty: the free lists are not needed to describe the memory.
+    protected boolean keepsBlocksInDictionaries() {
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+// Class: CoalescingDynamicMem
+// Extends A1DynamicMem with eager coalescing of free blocks in Free.
+// Next to the size-keyed freeBlk, every free block is also kept in two address-indexed dictionaries of the same type:
+// startBlk, indexed by the start address of the block, and endBlk, indexed by its end address (address + size).
+// Free blocks never overlap, so both keys are unique and the neighbours of a block [a, e) are found by exact search:
+//    the free block ending at a is endBlk.Find(a, true)
+//    the free block starting at e is startBlk.Find(e, true)
+// Exact search has the same meaning for every dictionary type, so this works with lists as well as trees.
+// Free merges the block with both of its free neighbours right away, so no two free blocks are ever contiguous
+// and Defragment has nothing left to do.
+
+public class CoalescingDynamicMem extends A1DynamicMem {
+
+    protected Dictionary startBlk;                    // Free blocks dictionary, indexed by start address
+    protected Dictionary endBlk;                      // Free blocks dictionary, indexed by end address
+    private Dictionary probe = new A1List(0, 0, 0);   // Detached element, used to delete a block by value
+
+    public CoalescingDynamicMem() { this(M, 1); }
+
+    public CoalescingDynamicMem(int size) { this(size, 1); }
+
+    public CoalescingDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public CoalescingDynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+        startBlk = newDictionary(dict_type);
+        endBlk = newDictionary(dict_type);
+        startBlk.Insert(0, size, 0);
+        endBlk.Insert(0, size, size);
+    }
+
+    // Inserts a free block in the three free block dictionaries.
+    protected void addFree(int address, int size){
+        freeBlk.Insert(address, size, size);
+        startBlk.Insert(address, size, address);
+        endBlk.Insert(address, size, address + size);
+    }
+
+    // Removes a free block from the three free block dictionaries. block is the element of the block in held, one of
+    // them, and is unlinked directly; the other two are searched by value.
+    protected void removeFree(Dictionary held, Dictionary block){
+        int address = block.address, size = block.size;
+        held.DeleteNode(block);
+        probe.address = address;
+        probe.size = size;
+        if(held != freeBlk){
+            probe.key = size;
+            freeBlk.Delete(probe);
+        }
+        if(held != startBlk){
+            probe.key = address;
+            startBlk.Delete(probe);
+        }
+        if(held != endBlk){
+            probe.key = address + size;
+            endBlk.Delete(probe);
+        }
+    }
+
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        Dictionary match = freeBlk.Find(blockSize, false);
+        if(match == null) return -1;
+        int address = match.address, size = match.size;
+        removeFree(freeBlk, match);
+        allocBlk.Insert(address, blockSize, address);
+        if(size > blockSize) addFree(address + blockSize, size - blockSize);
+        return address;
+    }
+
+    // Frees the block and merges it with the free blocks directly before and after it.
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        Dictionary match = allocBlk.Find(startAddr, true);
+        if(match == null) return -1;
+        int address = match.address, size = match.size;
+        allocBlk.DeleteNode(match);
+        release(address, size);
+        return 0;
+    }
+
+    // Adds the block [address, address + size) to the free blocks, merged with the free blocks directly before and
+    // after it. The block must not overlap any free block.
+    protected void release(int address, int size) {
+        Dictionary prev = endBlk.Find(address, true);
+        if(prev != null){
+            address = prev.address;
+            size += prev.size;
+            removeFree(endBlk, prev);
+        }
+        Dictionary next = startBlk.Find(address + size, true);
+        if(next != null){
+            int nextSize = next.size;
+            removeFree(startBlk, next);
+            size += nextSize;
+        }
+        addFree(address, size);
+    }
+
+    // The tail is released, i.e. merged with the free block after it. TC => O(log n) with trees.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        resizeAllocated(startAddr, newSize);
+        release(startAddr + newSize, size - newSize);
+        return true;
+    }
+
+    // The free block after the block is found in startBlk, and what the block does not take of it stays free.
+    // TC => O(log n) with trees.
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        Dictionary next = startBlk.Find(startAddr + size, true);
+        if((next == null) || (next.size < newSize - size)) return false;
+        int total = size + next.size;
+        removeFree(startBlk, next);
+        resizeAllocated(startAddr, newSize);
+        if(total > newSize) addFree(startAddr + newSize, total - newSize);
+        return true;
+    }
+
+    // Contiguous free blocks are merged eagerly in Free, so there is never anything left to defragment.
+    public void Defragment() {
+        return ;
+    }
+}
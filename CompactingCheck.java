@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Class: CompactingCheck
+// Randomized check of the compactor of CompactingDynamicMem.
+//     java CompactingCheck [dict_type [operations [budget]]]
+// Interleaves AllocateHandle, Allocate (pinned blocks), FreeHandle, Free, CompactStep(budget) and Compact calls
+// (defaults: AVL trees, 100000 operations, budget 4), once with the memory on the heap and once off the heap, and
+// checks that:
+//     every block keeps its size and its contents, which are written when it is allocated, wherever it is moved;
+//     pinned blocks never move;
+//     a pass run on its own ends within ceil((n + 1) / budget) calls of CompactStep(budget), for n allocated blocks,
+//     and leaves no free block below a handle block;
+//     no free memory is lost: the free blocks and the allocated blocks always add up to the whole memory.
+
+public class CompactingCheck {
+
+    private final static int SIZE = 100000;
+
+    private static CompactingDynamicMem mem;
+    private static HashMap<Integer, Integer> handles = new HashMap<Integer, Integer>();  // Size of each handle block
+    private static TreeMap<Integer, Integer> pinned = new TreeMap<Integer, Integer>();  // Pinned blocks by address
+    private static long allocated;                  // Total size of the allocated blocks
+
+    private static void fail(String message){
+        System.out.println("FAILED: " + message);
+        System.exit(1);
+    }
+
+    // Each block holds a value derived from its handle (or its address, if pinned) in its first and last 4 bytes.
+    private static void write(int address, int blockSize, int value){
+        mem.putInt(address, 0, value);
+        mem.putInt(address, blockSize - 4, ~value);
+    }
+
+    private static void checkBlock(int address, int blockSize, int value, String what){
+        if(mem.BlockSize(address) != blockSize) fail(what + " at " + address + " has size " + mem.BlockSize(address));
+        if((mem.getInt(address, 0) != value) || (mem.getInt(address, blockSize - 4) != ~value)){
+            fail("the contents of " + what + " at " + address + " were lost");
+        }
+    }
+
+    // Checks the contents of every block, and that the free blocks hold exactly the memory which is not allocated.
+    private static void checkAll(){
+        for(int h : handles.keySet()) checkBlock(mem.Address(h), handles.get(h), 7919*h, "handle " + h);
+        for(int address : pinned.keySet()) checkBlock(address, pinned.get(address), address, "pinned block");
+        long free = 0;
+        for(Dictionary current = mem.freeBlk.getFirst(); current != null; current = current.getNext()){
+            free += current.size;
+        }
+        if(free + allocated != SIZE) fail(free + " free and " + allocated + " allocated addresses out of " + SIZE);
+    }
+
+    // Ends the running pass, then runs a new one on its own, and checks its number of calls and that only pinned blocks
+    // are left above free blocks.
+    private static void checkPass(int budget){
+        while(!mem.CompactStep(budget));
+        long bound = (handles.size() + pinned.size() + 1 + budget - 1) / budget;
+        int calls = 1;
+        while(!mem.CompactStep(budget)){
+            if(++calls > bound) fail("pass not done after " + calls + " calls of budget " + budget);
+        }
+        for(Dictionary current = mem.startBlk.getFirst(); current != null; current = current.getNext()){
+            int end = current.address + current.size;
+            if((end != SIZE) && !pinned.containsKey(end)) fail("free block below the handle block at " + end);
+        }
+    }
+
+    private static void run(int type, int operations, int budget, boolean offHeap){
+        mem = new CompactingDynamicMem(SIZE, type);
+        if(offHeap) mem.MoveOffHeap();
+        handles.clear();
+        pinned.clear();
+        allocated = 0;
+        Random random = new Random(type);
+        ArrayList<Integer> live = new ArrayList<Integer>();         // The keys of handles, in no order
+        ArrayList<Integer> addresses = new ArrayList<Integer>();    // The keys of pinned, in no order
+        for(int i = 0; i < operations; i++){
+            int op = random.nextInt(12);
+            if(op < 4){
+                int blockSize = 8 + random.nextInt((random.nextInt(10) == 0) ? 2000 : 50);
+                int h = mem.AllocateHandle(blockSize);
+                if(h == -1) continue;
+                if(handles.containsKey(h)) fail("handle " + h + " handed out twice");
+                handles.put(h, blockSize);
+                live.add(h);
+                allocated += blockSize;
+                write(mem.Address(h), blockSize, 7919*h);
+            }
+            else if(op < 5){
+                int blockSize = 8 + random.nextInt(30);
+                int address = mem.Allocate(blockSize);
+                if(address == -1) continue;
+                pinned.put(address, blockSize);
+                addresses.add(address);
+                allocated += blockSize;
+                write(address, blockSize, address);
+            }
+            else if((op < 8) && !live.isEmpty()){
+                int j = random.nextInt(live.size()), h = live.get(j);
+                live.set(j, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+                if(mem.FreeHandle(h) != 0) fail("FreeHandle(" + h + ") failed");
+                if(mem.Address(h) != -1) fail("handle " + h + " still has an address once freed");
+                allocated -= handles.remove(h);
+            }
+            else if((op < 9) && !addresses.isEmpty()){
+                int j = random.nextInt(addresses.size()), address = addresses.get(j);
+                addresses.set(j, addresses.get(addresses.size() - 1));
+                addresses.remove(addresses.size() - 1);
+                if(mem.Free(address) != 0) fail("Free(" + address + ") failed");
+                allocated -= pinned.remove(address);
+            }
+            else if(op < 11) mem.CompactStep(budget);
+            else mem.Compact();
+            if(i % 5000 == 4999){
+                checkAll();
+                checkPass(budget);
+                checkAll();
+            }
+        }
+        for(int address : pinned.keySet()) mem.Free(address);
+        pinned.clear();
+        allocated = 0;
+        for(int h : handles.keySet()) allocated += handles.get(h);
+        checkPass(budget);
+        checkAll();
+        Dictionary top = mem.freeBlk.getFirst();
+        if((allocated < SIZE) && ((top == null) || (top.address != allocated) || (top.getNext() != null))){
+            fail("the free memory is not one block at the top once nothing is pinned");
+        }
+    }
+
+    public static void main(String args[]){
+        int type = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+        int operations = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+        int budget = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+        run(type, operations, budget, false);
+        run(type, operations, budget, true);
+        System.out.println("check ok");
+    }
+}
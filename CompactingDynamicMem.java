@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+// Class: CompactingDynamicMem
+// CoalescingDynamicMem with a sliding compactor, for blocks which are reached through handles.
+// AllocateHandle returns a handle instead of an address, and Address(handle) gives the current address of the block.
+// Compaction slides such blocks down over the free blocks below them, keeping their order, and updates allocBlk and
+// the handle table, so that the free memory above them ends up as one block. Blocks allocated with Allocate are
+// pinned: their callers hold their address, so they never move, and the free memory just below them stays free.
+// The address of a handle block is only valid until the next call to AllocateHandle, Allocate, Compact or
+// CompactStep, which may move it.
+
+// A pass of the compactor repeatedly takes the lowest free block above its cursor. The block right after it is
+// allocated, since free blocks are coalesced. If that block is pinned, the cursor moves past it; otherwise it is moved
+// down to the start of the free block, which is then merged with the free block above. Each unit of work is O(log n)
+// plus the bytes moved, and every block is moved at most once per pass.
+// CompactStep runs a bounded number of units, so that a pass can be spread over several short pauses; Compact runs a
+// whole pass. Allocations which would fail run a whole pass first and try again.
+// The lowest free block is found with startBlk.Find(cursor, false), which needs ordered dictionaries (Trees); with
+// lists, a pass does nothing.
+
+public class CompactingDynamicMem extends CoalescingDynamicMem {
+
+    private int addressOf[] = new int[64];         // addressOf[h] = address of the block of handle h, -1 if unused
+    private int handles;                           // Handles 0 .. handles-1 have been handed out at least once
+    private int freeHandles[] = new int[64];       // Stack of the unused handles below handles
+    private int freeHandleCount;
+    private HashDictionary handleAt = new HashDictionary();    // Handle blocks by address: key = address, size = handle
+    private int cursor;                            // Address from which the running pass looks for free blocks
+
+    public CompactingDynamicMem() { this(M, 3); }
+
+    public CompactingDynamicMem(int size) { this(size, 3); }
+
+    public CompactingDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public CompactingDynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+    }
+
+    // Allocates a movable block and returns its handle, -1 if there is no space even after compaction.
+    public int AllocateHandle(int blockSize) {
+        int address = Allocate(blockSize);
+        if(address == -1) return -1;
+        int h;
+        if(freeHandleCount > 0) h = freeHandles[--freeHandleCount];
+        else{
+            if(handles == addressOf.length) addressOf = Arrays.copyOf(addressOf, 2*handles);
+            h = handles++;
+        }
+        addressOf[h] = address;
+        handleAt.Insert(address, h, address);
+        return h;
+    }
+
+    // Returns the current address of the block of handle h, -1 if h is not in use.
+    public int Address(int h) {
+        return ((h < 0) || (h >= handles)) ? -1 : addressOf[h];
+    }
+
+    // Frees the block of handle h. return 0 if successful, -1 otherwise
+    public int FreeHandle(int h) {
+        int address = Address(h);
+        return (address == -1) ? -1 : Free(address);
+    }
+
+    public int Allocate(int blockSize) {
+        int address = super.Allocate(blockSize);
+        if((address == -1) && (blockSize > 0)){
+            Compact();
+            address = super.Allocate(blockSize);
+        }
+        return address;
+    }
+
+    // Also releases the handle of the block, if it has one.
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        if(super.Free(startAddr) != 0) return -1;
+        Dictionary entry = handleAt.Find(startAddr, true);
+        if(entry != null){
+            int h = entry.size;
+            handleAt.DeleteNode(entry);
+            addressOf[h] = -1;
+            if(freeHandleCount == freeHandles.length) freeHandles = Arrays.copyOf(freeHandles, 2*freeHandleCount);
+            freeHandles[freeHandleCount++] = h;
+        }
+        return 0;
+    }
+
+    // A handle block keeps its handle, which follows the block if it moves. The block is pinned while it is resized,
+    // so that the compaction run by a failing Allocate does not move it under the copy.
+    public int Reallocate(int startAddr, int newSize) {
+        Dictionary entry = handleAt.Find(startAddr, true);
+        if(entry == null) return super.Reallocate(startAddr, newSize);
+        int h = entry.size;
+        handleAt.DeleteNode(entry);
+        int address = super.Reallocate(startAddr, newSize);
+        int now = (address == -1) ? startAddr : address;
+        addressOf[h] = now;
+        handleAt.Insert(now, h, now);
+        return address;
+    }
+
+    // Runs a whole compaction pass. A running pass is restarted from the bottom, since blocks may have been freed below
+    // its cursor.
+    public void Compact() {
+        cursor = 0;
+        while(!CompactStep(Integer.MAX_VALUE));
+    }
+
+    // Does at most maxBlocks units of work of the current pass (starting a new pass if none is running), and returns
+    // true once the pass is complete.
+    public boolean CompactStep(int maxBlocks) {
+        return CompactStep(maxBlocks, Long.MAX_VALUE);
+    }
+
+    // Same as CompactStep(maxBlocks), also stopping once maxNanos nanoseconds have elapsed.
+    public boolean CompactStep(int maxBlocks, long maxNanos) {
+        if(!(startBlk instanceof Tree)) return true;
+        long startTime = System.nanoTime();
+        for(int done = 0; done < maxBlocks; done++){
+            if((done > 0) && (System.nanoTime() - startTime >= maxNanos)) return false;
+            Dictionary gap = startBlk.Find(cursor, false);
+            if((gap == null) || (gap.address + gap.size == capacity())){
+                cursor = 0;                     // Nothing but the top block is left above the cursor
+                return true;
+            }
+            int to = gap.address, gapSize = gap.size, from = to + gapSize;
+            Dictionary block = allocBlk.Find(from, true);
+            Dictionary entry = handleAt.Find(from, true);
+            if(entry == null){
+                cursor = from + block.size;     // Pinned block: the free block below it stays
+                continue;
+            }
+            int blockSize = block.size, h = entry.size;
+            if(Memory != null) System.arraycopy(Memory, from, Memory, to, blockSize);
+            else contents().put(to, contents(), from, blockSize);
+            allocBlk.DeleteNode(block);
+            allocBlk.Insert(to, blockSize, to);
+            handleAt.DeleteNode(entry);
+            handleAt.Insert(to, h, to);
+            addressOf[h] = to;
+            removeFree(startBlk, gap);
+            release(to + blockSize, gapSize);
+            cursor = to + blockSize;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Random;
+
+// Class: ConcurrentBenchmark
+// Multi-threaded stress test and throughput benchmark of the thread-safe allocators.
+//     java ConcurrentBenchmark [threads [operations [mode [dict_type]]]]
+// Every thread (default 4) does operations (default 1000000) random Allocate/Free calls on one shared allocator:
+//     mode "cached" (default) -- ConcurrentDynamicMem, with per-thread caches
+//     mode "locked"           -- A2DynamicMem, every call inside one synchronized block
+//     mode "arena"            -- ArenaDynamicMem, with one arena per thread
+// The sizes are mostly small. A thread fills each block it allocates with its own mark, and checks the mark before it
+// frees the block: an address handed out twice while in use shows up as a wrong mark. Every Free must succeed, and a
+// Free of an address inside a block held by the thread must fail. At the end every block is freed, and after a
+// Defragment the whole memory (every arena in arena mode) must be allocatable as one block again. The throughput in
+// calls per second is printed.
+// Half of the threads terminate without FlushCache, so in cached mode the end check also needs the caches of
+// terminated threads to be reclaimed. Cached mode then runs CHURN short-lived threads one after the other on a small
+// heap: each one allocates and frees a block without flushing its cache, and each Allocate must still succeed.
+
+public class ConcurrentBenchmark {
+
+    private final static int CHURN = 64;                // Short-lived threads of the churn check
+    private final static int CHURN_SIZE = 1024;         // Heap of the churn check
+
+    private static DynamicMem mem;
+    private static boolean locked;
+    private static volatile String failure;             // First error found by a thread
+
+    private static int allocate(int blockSize){
+        if(!locked) return mem.Allocate(blockSize);
+        synchronized(mem){ return mem.Allocate(blockSize); }
+    }
+
+    private static int free(int address){
+        if(!locked) return mem.Free(address);
+        synchronized(mem){ return mem.Free(address); }
+    }
+
+    private static void fail(String message){
+        if(failure == null) failure = message;
+    }
+
+    // Body of one thread: the blocks it holds are live[0 .. count-1], with their sizes.
+    private static void run(int id, int operations){
+        Random random = new Random(id);
+        byte mark = (byte)(id + 1);
+        int live[] = new int[256], sizes[] = new int[256], count = 0;
+        for(int i = 0; (i < operations) && (failure == null); i++){
+            if((count < live.length) && ((count == 0) || random.nextBoolean())){
+                int blockSize = (random.nextInt(64) != 0) ? 1 + random.nextInt(64) : 65 + random.nextInt(512);
+                int address = allocate(blockSize);
+                if(address == -1) continue;
+                for(int j = address; j < address + blockSize; j++) mem.Memory[j] = mark;
+                live[count] = address;
+                sizes[count++] = blockSize;
+            }
+            else{
+                int k = random.nextInt(count);
+                int address = live[k], blockSize = sizes[k];
+                // No block can start inside a block held by this thread
+                if((i % 16 == 0) && (blockSize > 1) && (free(address + 1) != -1)){
+                    fail("thread " + id + ": Free inside block " + address + " succeeded");
+                }
+                for(int j = address; j < address + blockSize; j++){
+                    if(mem.Memory[j] != mark){
+                        fail("thread " + id + ": block " + address + " overwritten by another thread");
+                        return;
+                    }
+                    mem.Memory[j] = 0;
+                }
+                live[k] = live[--count];
+                sizes[k] = sizes[count];
+                if(free(address) != 0) fail("thread " + id + ": Free(" + address + ") failed");
+            }
+        }
+        while(count > 0){
+            if(free(live[--count]) != 0) fail("thread " + id + ": final Free(" + live[count] + ") failed");
+        }
+        if((mem instanceof ConcurrentDynamicMem) && (id % 2 == 0)) ((ConcurrentDynamicMem)mem).FlushCache();
+    }
+
+    // Runs CHURN threads one after the other on a ConcurrentDynamicMem of size CHURN_SIZE. Each one allocates a block
+    // of size 16 and frees it, leaving it in its cache when it terminates.
+    private static void churn() throws InterruptedException {
+        final ConcurrentDynamicMem small = new ConcurrentDynamicMem(CHURN_SIZE, 3);
+        for(int t = 0; (t < CHURN) && (failure == null); t++){
+            final int id = t;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    int address = small.Allocate(16);
+                    if(address == -1) fail("churn thread " + id + ": Allocate(16) failed");
+                    else small.Free(address);
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        if((failure == null) && (small.Allocate(CHURN_SIZE) != 0)) fail("churn: memory not fully free at the end");
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        final int operations = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+        String mode = (args.length > 2) ? args[2] : "cached";
+        int type = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+        int size = DynamicMem.M;
+        locked = mode.equals("locked");
+        if(mode.equals("arena")) mem = new ArenaDynamicMem(size, type, type, threads);
+        else if(locked) mem = new A2DynamicMem(size, type);
+        else mem = new ConcurrentDynamicMem(size, type);
+
+        Thread workers[] = new Thread[threads];
+        for(int t = 0; t < threads; t++){
+            final int id = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() { ConcurrentBenchmark.run(id, operations); }
+            });
+        }
+        long startTime = System.nanoTime();
+        for(Thread w : workers) w.start();
+        for(Thread w : workers) w.join();
+        long elapsed = System.nanoTime() - startTime;
+
+        if(failure == null){
+            mem.Defragment();
+            if(mem instanceof ArenaDynamicMem){
+                ArenaDynamicMem arenas = (ArenaDynamicMem)mem;
+                for(int i = 0; i < arenas.getArenaCount(); i++){
+                    if(arenas.Allocate(arenas.arenaSize(i)) == -1) fail("arena " + i + " not fully free at the end");
+                }
+            }
+            else if(mem.Allocate(size) != 0) fail("memory not fully free at the end");
+        }
+        if((failure == null) && (mem instanceof ConcurrentDynamicMem)) churn();
+        System.out.printf("%s, %d threads, dict_type %d: %.2f million calls per second%n", mode, threads, type,
+            (double)threads * operations / (elapsed / 1e3));
+        System.out.println((failure == null) ? "stress ok" : "FAILED: " + failure);
+        if(failure != null) System.exit(1);
+    }
+}
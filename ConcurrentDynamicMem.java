@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Class: ConcurrentDynamicMem
+// Thread-safe A2DynamicMem, in which each thread keeps a small cache of free blocks per size.
+// The shared freeBlk/allocBlk are only touched under one lock. A thread serves a request of size s <= MAX_CACHED_SIZE
+// from its own cache of blocks of size s, and pushes the blocks of size s it frees there, so most Allocate/Free calls
+// never take the shared lock. An empty cache is refilled in one locked call with BATCH blocks, or fewer on a heap that
+// is nearly full (a refill takes at most 1/REFILL_SHARE of the free memory left), and a full one flushes BATCH blocks
+// back in one locked call. Larger requests go to the shared allocator directly.
+
+// Blocks sitting in a cache stay in allocBlk as far as the shared allocator is concerned. The sizes of the blocks
+// actually handed out are kept in an atomic array indexed by address, so that Free can check and claim a block without
+// the lock (a second Free of the same block finds 0 and fails).
+// Cached blocks are free memory. Every cache is registered in a shared list, and is used under its own monitor, which
+// only its thread takes in the common case (uncontended). Before an allocation fails, and in Defragment, the caches
+// of all the threads, idle or terminated, are flushed back under the shared lock, and those of terminated threads are
+// dropped from the list. Locks are always taken in the order: cache, then the shared lock.
+
+public class ConcurrentDynamicMem extends A2DynamicMem {
+
+    public final static int MAX_CACHED_SIZE = 64;   // Largest block size that is cached
+    public final static int CACHE_CAPACITY = 32;    // Largest number of blocks of one size in the cache of a thread
+    public final static int BATCH = 16;             // Largest number of blocks moved by a refill or a flush
+    public final static int REFILL_SHARE = 8;       // A refill takes at most 1/REFILL_SHARE of the free memory left
+
+    private static final class Cache {
+        final Thread owner = Thread.currentThread();    // Thread which uses the cache
+        int blocks[][] = new int[MAX_CACHED_SIZE+1][];  // blocks[s] is a stack of start addresses of blocks of size s
+        int count[] = new int[MAX_CACHED_SIZE+1];       // Number of addresses on blocks[s]
+    }
+
+    private final Object lock = new Object();           // Guards freeBlk, allocBlk and every call to the superclass
+    private AtomicIntegerArray handedOut;               // handedOut[a] = size of the block at a held by a caller, or 0
+    private long freeSpace;                             // Free memory of the shared allocator, guarded by lock
+    private final ArrayList<Cache> allCaches = new ArrayList<Cache>();     // Caches of the threads, guarded by lock
+    private final ThreadLocal<Cache> caches = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            Cache c = new Cache();
+            synchronized(lock){ allCaches.add(c); }
+            return c;
+        }
+    };
+
+    public ConcurrentDynamicMem() { this(M, 1); }
+
+    public ConcurrentDynamicMem(int size) { this(size, 1); }
+
+    public ConcurrentDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public ConcurrentDynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+        handedOut = new AtomicIntegerArray(size);
+        freeSpace = size;
+    }
+
+    // Allocates from the shared allocator. The lock must be held.
+    private int allocateShared(int blockSize){
+        int address = super.Allocate(blockSize);
+        if(address != -1) freeSpace -= blockSize;
+        return address;
+    }
+
+    // Frees a block of the given size to the shared allocator. The lock must be held.
+    private void freeShared(int address, int blockSize){
+        super.Free(address);
+        freeSpace += blockSize;
+    }
+
+    // Returns n blocks of size s from the top of the cache to the shared allocator. The cache and lock must be held.
+    private void flush(Cache c, int s, int n){
+        while((n-- > 0) && (c.count[s] > 0)) freeShared(c.blocks[s][--c.count[s]], s);
+    }
+
+    // Returns every cached block to the shared allocator. The cache and the lock must be held.
+    private void flushAll(Cache c){
+        for(int s = 1; s <= MAX_CACHED_SIZE; s++) flush(c, s, c.count[s]);
+    }
+
+    // Allocates blocks of size s from the shared allocator into the cache, in one locked call: BATCH blocks, or fewer
+    // so as to take at most 1/REFILL_SHARE of the free memory left, but at least one. The cache must be held.
+    private void refill(Cache c, int s){
+        if(c.blocks[s] == null) c.blocks[s] = new int[CACHE_CAPACITY];
+        synchronized(lock){
+            long n = Math.min(BATCH, Math.max(1, freeSpace / ((long)REFILL_SHARE * s)));
+            while(c.count[s] < n){
+                int address = allocateShared(s);
+                if(address == -1) break;
+                c.blocks[s][c.count[s]++] = address;
+            }
+        }
+    }
+
+    // Flushes the cache of every thread back to the shared allocator, one cache at a time, and drops the caches of
+    // the threads which have terminated. TC => O(threads + cached blocks * the cost of Free).
+    private void reclaim(){
+        Cache all[];
+        synchronized(lock){ all = allCaches.toArray(new Cache[allCaches.size()]); }
+        for(Cache c : all){
+            synchronized(c){
+                synchronized(lock){
+                    flushAll(c);
+                    if(!c.owner.isAlive()) allCaches.remove(c);
+                }
+            }
+        }
+    }
+
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        int address = -1;
+        if(blockSize <= MAX_CACHED_SIZE){
+            Cache c = caches.get();
+            synchronized(c){
+                if(c.count[blockSize] == 0) refill(c, blockSize);
+                if(c.count[blockSize] > 0) address = c.blocks[blockSize][--c.count[blockSize]];
+            }
+        }
+        else{
+            synchronized(lock){ address = allocateShared(blockSize); }
+        }
+        if(address == -1){
+            reclaim();                      // The memory cached by every thread comes back before giving up
+            synchronized(lock){
+                super.Defragment();
+                address = allocateShared(blockSize);
+            }
+            if(address == -1) return -1;
+        }
+        handedOut.set(address, blockSize);
+        return address;
+    }
+
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        if((startAddr < 0) || (startAddr >= handedOut.length())) return -1;
+        int size = handedOut.getAndSet(startAddr, 0);
+        if(size == 0) return -1;            // Not allocated, or already freed
+        if(size > MAX_CACHED_SIZE){
+            synchronized(lock){ freeShared(startAddr, size); }
+            return 0;
+        }
+        Cache c = caches.get();
+        synchronized(c){
+            if(c.blocks[size] == null) c.blocks[size] = new int[CACHE_CAPACITY];
+            else if(c.count[size] == CACHE_CAPACITY){
+                synchronized(lock){ flush(c, size, BATCH); }
+            }
+            c.blocks[size][c.count[size]++] = startAddr;
+        }
+        return 0;
+    }
+
+    // Cached blocks are still in allocBlk, so the size of a block is read from handedOut.
+    public int BlockSize(int startAddr) {
+        if((startAddr < 0) || (startAddr >= handedOut.length())) return -1;
+        int size = handedOut.get(startAddr);
+        return (size == 0) ? -1 : size;
+    }
+
+    // The size of a block is also in handedOut and decides the cache it goes to, so blocks are not resized in place:
+    // a shrink keeps the block whole, and a grow moves it.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        return false;
+    }
+
+    // Blocks cached by the threads are free but still in allocBlk.
+    protected boolean keepsBlocksInDictionaries() {
+        return false;
+    }
+
+    // Defragments the shared free blocks, after flushing the caches of all the threads.
+    public void Defragment() {
+        reclaim();
+        synchronized(lock){ super.Defragment(); }
+    }
+
+    // The incremental pass works on the shared dictionaries, so it runs under the lock as well.
+    @Override
+    public boolean DefragmentStep(int maxBlocks, long maxNanos) {
+        synchronized(lock){ return super.DefragmentStep(maxBlocks, maxNanos); }
+    }
+
+    // Returns the blocks cached by the calling thread to the shared allocator. Not needed for correctness (the cache
+    // is reclaimed anyway when memory runs out), but it makes the blocks available to the others at once.
+    public void FlushCache() {
+        Cache c = caches.get();
+        synchronized(c){
+            synchronized(lock){ flushAll(c); }
+        }
+    }
+}
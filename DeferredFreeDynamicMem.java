@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Class: DeferredFreeDynamicMem
+// CoalescingDynamicMem whose Free only checks the block against allocBlk, and leaves the work on the free blocks
+// dictionaries for later: the block is pushed on a lock-free stack of pending blocks, and Free returns right away.
+// The pending blocks are added to the free blocks in batches. A batch is sorted by address, runs of contiguous blocks
+// in it are merged first, and each run is then merged with its free neighbours as in CoalescingDynamicMem, so a batch
+// of m blocks costs O(m log m) plus one coalescing per run.
+// A background worker is only started on request (last constructor), and runs until Shutdown. It drains the pending
+// blocks every MAX_DELAY_NANOS, or as soon as BATCH of them are waiting. Without one, they are drained only when
+// needed. In both cases Allocate drains them itself before it fails, and Defragment drains them.
+
+// Allocate and Free must be called by one thread at a time, as with the other allocators; allocBlk is only used by
+// them. The worker only touches the free blocks dictionaries, which are guarded by one lock held by Allocate and by
+// every drain. A thread pushing a block never waits for the lock.
+
+public class DeferredFreeDynamicMem extends CoalescingDynamicMem {
+
+    public final static int BATCH = 64;                     // Number of pending blocks which wakes up the worker
+    public final static long MAX_DELAY_NANOS = 1000000;     // Longest time the worker sleeps between two drains
+
+    // A freed block waiting to be added to the free blocks.
+    private static final class Pending {
+        final int address, size;
+        Pending next;                                       // Block pushed before this one
+
+        Pending(int address, int size, Pending next){
+            this.address = address;
+            this.size = size;
+            this.next = next;
+        }
+    }
+
+    private final Object lock = new Object();               // Guards freeBlk, startBlk and endBlk
+    private final AtomicReference<Pending> pending = new AtomicReference<Pending>();   // Top of the stack
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private long batch[] = new long[BATCH];                 // (address << 32) | size of the blocks of a drain
+    private Thread worker;                                  // null without a background worker
+    private volatile boolean stopped;
+
+    public DeferredFreeDynamicMem() { this(M, 1); }
+
+    public DeferredFreeDynamicMem(int size) { this(size, 1); }
+
+    public DeferredFreeDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public DeferredFreeDynamicMem(int size, int dict_type, int alloc_type) { this(size, dict_type, alloc_type, false); }
+
+    // background starts a worker thread, which runs until Shutdown is called.
+    public DeferredFreeDynamicMem(int size, int dict_type, int alloc_type, boolean background) {
+        super(size, dict_type, alloc_type);
+        if(background){
+            worker = new Thread(new Runnable() {
+                public void run() { work(); }
+            }, "DeferredFreeDynamicMem worker");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    // Body of the background worker.
+    private void work(){
+        while(!stopped){
+            LockSupport.parkNanos(this, MAX_DELAY_NANOS);
+            if(pending.get() != null){
+                synchronized(lock){ drain(); }
+            }
+        }
+    }
+
+    // Adds every pending block to the free blocks. The lock must be held. TC => O(m logm) for m pending blocks, plus
+    // one coalescing per run of contiguous blocks.
+    private void drain(){
+        Pending p = pending.getAndSet(null);
+        int n = 0;
+        for( ; p != null; p = p.next){
+            if(n == batch.length) batch = Arrays.copyOf(batch, 2 * n);
+            batch[n++] = ((long)p.address << 32) | p.size;
+        }
+        if(n == 0) return;
+        pendingCount.addAndGet(-n);
+        Arrays.sort(batch, 0, n);
+        for(int i = 0; i < n; ){
+            int address = (int)(batch[i] >>> 32), size = (int)batch[i++];
+            while((i < n) && ((int)(batch[i] >>> 32) == address + size)) size += (int)batch[i++];
+            release(address, size);
+        }
+    }
+
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        synchronized(lock){
+            int address = super.Allocate(blockSize);
+            if((address == -1) && (pending.get() != null)){
+                drain();
+                address = super.Allocate(blockSize);
+            }
+            return address;
+        }
+    }
+
+    // Removes the block from allocBlk and queues it. TC => the exact search in allocBlk, and O(1) for the rest.
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        Dictionary match = allocBlk.Find(startAddr, true);
+        if(match == null) return -1;
+        Pending p = new Pending(match.address, match.size, null);
+        allocBlk.DeleteNode(match);
+        do{
+            p.next = pending.get();
+        }while(!pending.compareAndSet(p.next, p));
+        if((pendingCount.incrementAndGet() == BATCH) && (worker != null)) LockSupport.unpark(worker);
+        return 0;
+    }
+
+    // Resizing in place works on the free blocks dictionaries, so it holds the lock. Blocks still pending are not
+    // free blocks yet, so a block followed by one of them is moved to grow.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        synchronized(lock){ return super.shrinkInPlace(startAddr, size, newSize); }
+    }
+
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        synchronized(lock){ return super.growInPlace(startAddr, size, newSize); }
+    }
+
+    // Adds the pending blocks to the free blocks, after which no two free blocks are contiguous.
+    public void Defragment() {
+        synchronized(lock){ drain(); }
+    }
+
+    // Stops the background worker, if any, and drains the blocks it left.
+    public void Shutdown() throws InterruptedException {
+        if(worker != null){
+            stopped = true;
+            LockSupport.unpark(worker);
+            worker.join();
+            worker = null;
+        }
+        Defragment();
+    }
+}
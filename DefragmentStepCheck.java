@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Class: DefragmentStepCheck
+// Randomized check of the incremental defragmentation of A2DynamicMem.
+//     java DefragmentStepCheck [dict_type [operations [budget]]]
+// Interleaves Allocate, Free and DefragmentStep(budget) calls (defaults: AVL trees, 200000 operations, budget 1), with
+// more frees than the budget can keep up with, and checks that:
+//     every allocated block lies inside the memory and overlaps no other allocated block;
+//     every pass ends within 2 units per block that was free when it started, whatever the frees made meanwhile;
+//     no free memory is lost: from time to time, and at the end once every block is freed, a full Defragment must
+//     leave exactly the memory which is not allocated in freeBlk.
+
+public class DefragmentStepCheck {
+
+    private final static int SIZE = 100000;
+
+    private static A2DynamicMem mem;
+    private static TreeMap<Integer, Integer> live = new TreeMap<Integer, Integer>();   // Allocated blocks
+    private static long allocated;                  // Total size of the allocated blocks
+
+    private static void fail(String message){
+        System.out.println("FAILED: " + message);
+        System.exit(1);
+    }
+
+    private static int count(Dictionary d){
+        int n = 0;
+        for(Dictionary current = d.getFirst(); current != null; current = current.getNext()) n++;
+        return n;
+    }
+
+    // Defragments fully, and checks that freeBlk holds exactly the memory which is not allocated.
+    private static void checkFree(){
+        mem.Defragment();
+        long free = 0;
+        for(Dictionary current = mem.freeBlk.getFirst(); current != null; current = current.getNext()){
+            free += current.size;
+        }
+        if(free + allocated != SIZE) fail(free + " free and " + allocated + " allocated addresses out of " + SIZE);
+    }
+
+    public static void main(String args[]){
+        int type = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+        int operations = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+        int budget = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+        mem = new A2DynamicMem(SIZE, type);
+        Random random = new Random(1);
+        ArrayList<Integer> addresses = new ArrayList<Integer>();    // The keys of live, in no order
+        int passes = 0, calls = 0, bound = 0;       // calls of the running pass, and the most it may take
+        for(int i = 0; i < operations; i++){
+            int op = random.nextInt(10);
+            if((op < 5) || live.isEmpty()){
+                int blockSize = 1 + random.nextInt(64);
+                int address = mem.Allocate(blockSize);
+                if(address == -1) continue;
+                Integer before = live.floorKey(address), after = live.ceilingKey(address);
+                if((address < 0) || (address + blockSize > SIZE) ||
+                    ((before != null) && (before + live.get(before) > address)) ||
+                    ((after != null) && (address + blockSize > after))){
+                    fail("Allocate(" + blockSize + ") returned " + address + ", which overlaps another block");
+                }
+                live.put(address, blockSize);
+                addresses.add(address);
+                allocated += blockSize;
+            }
+            else if(op < 9){
+                int j = random.nextInt(addresses.size()), address = addresses.get(j);
+                addresses.set(j, addresses.get(addresses.size() - 1));
+                addresses.remove(addresses.size() - 1);
+                if(mem.Free(address) != 0) fail("Free(" + address + ") failed");
+                allocated -= live.remove(address);
+            }
+            else{
+                if(mem.DefragmentPhase() == 0){
+                    bound = (2*count(mem.freeBlk) + budget - 1) / budget + 1;
+                    calls = 0;
+                }
+                calls++;
+                if(mem.DefragmentStep(budget)) passes++;
+                else if(calls >= bound) fail("pass not done after " + calls + " calls of budget " + budget);
+            }
+            if(i % 20000 == 19999) checkFree();
+        }
+        for(int address : live.keySet()) mem.Free(address);
+        live.clear();
+        allocated = 0;
+        checkFree();
+        if(mem.Allocate(SIZE) != 0) fail("the whole memory cannot be allocated at the end");
+        System.out.println(passes + " passes");
+        System.out.println("check ok");
+    }
+}
@@ -22,6 +22,14 @@ public abstract class Dictionary {
           // Note there may be multiple elements with the same key value. 
           // Delete searches for the node with the same key and same d and returns true only if d as well as d.key match
           // Returns false if d not found in the dictionary.
+
+     public boolean DeleteNode(Dictionary d) {
+          return Delete(d);
+     }
+          // Deletes d, which must be an element returned by Insert, Find, getFirst or getNext of this dictionary
+          // and not deleted since. Unlike Delete, implementations unlink the element directly instead of
+          // searching for it again. Returns false if d is not an element of the dictionary.
+          // The default implementation simply calls Delete.
           
      public abstract Dictionary Find(int k, boolean exact);
           // Searches for the key in the dictionary. 
@@ -1,6 +1,43 @@
 import java.util.Scanner;
 public class Driver{
+
+    // Creates the allocator selected on the command line: java Driver [allocator [dict_type [alloc_type]]]
+    // The default is A2DynamicMem on AVL trees, so that the results can be compared against res_gold.out.
+    static DynamicMem newAllocator(String name, int size, int type, int allocType){
+        switch (name) {
+            case "segregated":
+                return new SegregatedDynamicMem(size, type, allocType);
+            case "coalescing":
+                return new CoalescingDynamicMem(size, type, allocType);
+            case "compacting":
+                return new CompactingDynamicMem(size, type, allocType);
+            case "deferred":
+                return new DeferredFreeDynamicMem(size, type, allocType);
+            case "concurrent":
+                return new ConcurrentDynamicMem(size, type, allocType);
+            case "arena":
+                return new ArenaDynamicMem(size, type, allocType);
+            case "buddy":
+                return new BuddyDynamicMem(size, type, allocType);
+            case "firstfit":
+                return new FirstFitDynamicMem(size, type, allocType);
+            case "nextfit":
+                return new PlacementDynamicMem(size, type, allocType, PlacementDynamicMem.NEXT_FIT);
+            case "bestfit":
+                return new PlacementDynamicMem(size, type, allocType, PlacementDynamicMem.BEST_FIT);
+            case "worstfit":
+                return new PlacementDynamicMem(size, type, allocType, PlacementDynamicMem.WORST_FIT);
+            case "tlsf":
+                return new TLSFDynamicMem(size, type);
+            default:
+                return new A2DynamicMem(size, type, allocType);
+        }
+    }
+
     public static void main(String args[]){
+        String allocator = (args.length > 0) ? args[0] : "a2";
+        int type = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        int allocType = (args.length > 2) ? Integer.parseInt(args[2]) : type;
         long startTime = System.nanoTime();
         int numTestCases;
         Scanner sc = new Scanner(System.in);
@@ -8,7 +45,7 @@ public class Driver{
         while(numTestCases-->0){
             int size;
             size = sc.nextInt();
-            A2DynamicMem obj = new A2DynamicMem(size, 3);
+            DynamicMem obj = newAllocator(allocator, size, type, allocType);
             int numCommands = sc.nextInt();
             for(int i=0;i<numCommands;i++) {
                 String command;
@@ -24,6 +61,9 @@ public class Driver{
                     case "Free":
                         result = obj.Free(argument);
                         break;
+                    case "Reallocate":
+                        result = obj.Reallocate(argument, sc.nextInt());
+                        break;
                     case "Defragment":
                         obj.Defragment();
                         toPrint = false;
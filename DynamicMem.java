@@ -1,18 +1,57 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
 // Class: DynamicMem
 // Dynamic memory allocator using the dictionaries
-// Can use three implementation of dictionaries
+// Can use eight implementation of dictionaries
 //   1. Based on doubly linked lists (List.java --> A1List.java)
 //   2. Based on binary search trees (Tree.java --> BSTree.java)
 //   3. Based on AVL trees (AVLTree.java)
+//   4. Based on AVL trees stored in primitive arrays (ArrayAVLTree.java)
+//   5. Based on an open-addressing hash table (HashDictionary.java), for exact lookups only, i.e. for allocBlk
+//   6. Based on B+-trees with wide nodes (BTree.java)
+//   7. Based on splay trees (SplayTree.java)
+//   8. Based on lock-free skip lists (SkipList.java)
+// The allocated blocks dictionary can use a different implementation than the free blocks dictionary.
+
+// The contents of the memory are kept in a ByteBuffer: a view of Memory by default, or a direct buffer outside the
+// Java heap, allocated by the constructor for the OFF_HEAP storage or by MoveOffHeap later. They are read and
+// written through a typed API at an allocated address (getInt, putLong, copy, ...), which checks that the bytes
+// accessed are inside the block allocated there, or through slice, a buffer sharing the bytes of one allocated block.
+// Every access of the typed API looks the block up (BlockSize), so repeated accesses to one block are cheaper through
+// its slice, which is bounded by the buffer itself.
+
+// Reallocate resizes an allocated block. A smaller size shrinks the block in place, the tail going back to the free
+// blocks; a larger one grows it in place when the block right after it is free and large enough; otherwise a new
+// block is allocated, the contents are copied and the old block is freed. The in-place paths are hooks
+// (shrinkInPlace, growInPlace) which each allocator implements for its own free blocks; an allocator which cannot
+// split a block keeps it whole on a shrink, and one which cannot find its neighbour moves the block on a grow.
+// A1DynamicMem and A2DynamicMem (the default allocator) are such allocators: their freeBlk is indexed by size, so the
+// free block right after a block cannot be found. They always move a block on a grow, and the tail of a shrink is
+// a separate free block until Defragment merges it. CoalescingDynamicMem, FirstFitDynamicMem, TLSFDynamicMem and the
+// allocators built on them index their free blocks by address, and grow in place.
+// Counters record how often each path is taken.
 
 public abstract class DynamicMem {
         
     public final static int M = 1000000; // Total number of Memory addresses
-    public byte Memory[];  //Memory Array, initailized from data segment
+    public final static int ON_HEAP = 0;   // Storage of the contents: in Memory, on the Java heap (default)
+    public final static int OFF_HEAP = 1;  // In a direct buffer outside the Java heap
+    protected final static int NO_MEMORY = 2;   // None, for allocators whose contents are elsewhere or set by useBuffer
+    public byte Memory[];  //Memory Array, initailized from data segment. null once the memory is off the heap
+    private ByteBuffer data;               // Contents of the memory, in the native byte order
+    private final int memorySize;          // Number of addresses
+
+    private final AtomicLong shrinks = new AtomicLong();   // Reallocate calls served in place, with size <= the old one
+    private final AtomicLong grows = new AtomicLong();     // Reallocate calls grown in place
+    private final AtomicLong moves = new AtomicLong();     // Reallocate calls which moved the block
 
     public Dictionary freeBlk;             // Free blocks dictionary
     public Dictionary  allocBlk;           // Allocated blocks dictionary
-    int type;                              // Type of dictionary: 1 -- DL List; 2 -- Binary Search Tree; 3 -- AVL Tree
+    int type;                              // Type of dictionary: 1 -- DL List; 2 -- Binary Search Tree; 3 -- AVL Tree;
+                                           // 4 -- Array AVL Tree; 5 -- Hash table; 6 -- B+-tree;
+                                           // 7 -- Splay Tree; 8 -- Skip List
             
     public DynamicMem() {                  // Constructor function should create a memory of size M if no size specified
         this(M, 1);                        // Default dictionary using doubly linked lists
@@ -23,40 +62,190 @@ public abstract class DynamicMem {
     }
 
     public DynamicMem(int size, int dict_type) {
+        this(size, dict_type, dict_type);
+    }
+
+    public DynamicMem(int size, int dict_type, int alloc_type) {
+        this(size, dict_type, alloc_type, ON_HEAP);
+    }
+
+    public DynamicMem(int size, int dict_type, int alloc_type, int storage) {
  
         // Constructor function. Allocates memory for the allocator. 
         // Initializes the free blocks and allocates blocks dictionaries
         // If dist_type == 1 then it uses Lists (A1List)
         // If dist_type == 2 then it uses Binary Search Trees (BSTree)
         // If dist_type == 3 then it uses AVL Trees (AVLTree)
+        // If dist_type == 4 then it uses AVL Trees stored in primitive arrays (ArrayAVLTree)
+        // If dist_type == 6 then it uses B+-trees (BTree)
+        // If dist_type == 7 then it uses Splay Trees (SplayTree)
+        // alloc_type selects the allocated blocks dictionary with the same numbering. allocBlk is only searched by
+        // exact address, so alloc_type == 5 (HashDictionary) gives O(1) expected lookups in Free.
+        // storage is ON_HEAP, OFF_HEAP or NO_MEMORY: the contents are never copied from one to the other.
 
         // Index the dictionary by size to find the best fit in case of BSTs
         // Initially, there is only one block in the free block list
 
-        Memory = new byte[size];
+        memorySize = size;
+        if(storage == OFF_HEAP) data = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        else if(storage != NO_MEMORY){
+            Memory = new byte[size];
+            data = ByteBuffer.wrap(Memory).order(ByteOrder.nativeOrder());
+        }
         
-        type = dict_type;
+        type = (dict_type == 5) ? 3 : dict_type;   // freeBlk holds many blocks of the same size, which a hash table on
+                                                   // the key cannot, so it falls back on AVL trees
+
+        freeBlk = newDictionary(type);     // Initiates the sentinel nodes.
+        allocBlk = newDictionary(alloc_type);
+        freeBlk.Insert(0, size, size);
+        // Initially free list has only one block with all the memory
+    }
+
+    // Creates an empty dictionary of the given type, with the same numbering as dict_type:
+    // 1 -- DL List (A1List); 2 -- Binary Search Tree (BSTree); 3 (or anything else) -- AVL Tree (AVLTree);
+    // 4 -- Array AVL Tree (ArrayAVLTree); 5 -- Hash table (HashDictionary);
+    // 6 -- B+-tree (BTree); 7 -- Splay Tree (SplayTree); 8 -- Lock-free Skip List (SkipList)
+    protected static Dictionary newDictionary(int dict_type) {
+        if (dict_type == 1) return new A1List();
+        else if (dict_type == 2) return new BSTree();
+        else if (dict_type == 4) return new ArrayAVLTree();
+        else if (dict_type == 5) return new HashDictionary();
+        else if (dict_type == 6) return new BTree();
+        else if (dict_type == 7) return new SplayTree();
+        else if (dict_type == 8) return new SkipList();
+        else return new AVLTree();
+    }
+
+    // Size of the memory, i.e. number of addresses.
+    public int capacity() {
+        return memorySize;
+    }
+
+    // Moves the contents of the memory to a direct buffer outside the Java heap. Memory is set to null.
+    // An allocator created with the OFF_HEAP storage is there already, without the copy.
+    public void MoveOffHeap() {
+        if((data == null) || data.isDirect()) return;
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.capacity());
+        direct.put(0, data, 0, data.capacity());
+        useBuffer(direct);
+    }
+
+    // Keeps the contents of the memory in buffer from now on, which must hold capacity() bytes. Memory is set to null.
+    protected void useBuffer(ByteBuffer buffer) {
+        data = buffer.order(ByteOrder.nativeOrder());
+        Memory = null;
+    }
+
+    // Buffer holding the contents of the memory, for Snapshot.
+    ByteBuffer contents() {
+        return data;
+    }
 
-        if (type == 1){
-            freeBlk = new A1List();   // Initiates the sentinel nodes. (Tail and head)
-            allocBlk = new A1List();   
-            freeBlk.Insert(0, size, size);
-            // Initially free list has only one block with all the memory
+    // Whether allocBlk holds every allocated block with its size, and freeBlk only free blocks, so that the two
+    // describe the memory (anything in neither is free). Snapshot only writes allocators which opt in; the default is
+    // false.
+    protected boolean keepsBlocksInDictionaries() {
+        return false;
+    }
+
+    // Returns the size of the allocated block starting at startAddr, -1 if there is none.
+    // The default looks it up in allocBlk; allocators which keep their allocated blocks elsewhere override it.
+    public int BlockSize(int startAddr) {
+        Dictionary match = allocBlk.Find(startAddr, true);
+        return (match == null) ? -1 : match.size;
+    }
+
+    // Returns the index in data of bytes offset .. offset+length-1 of the block allocated at startAddr.
+    // Throws IndexOutOfBoundsException if they are not all inside that block.
+    private int locate(int startAddr, int offset, int length) {
+        int blockSize = BlockSize(startAddr);
+        if((blockSize == -1) || (offset < 0) || (length < 0) || (length > blockSize - offset)){
+            throw new IndexOutOfBoundsException("bytes " + offset + " to " + (offset + length - 1) +
+                " of the block at " + startAddr + " (size " + blockSize + ")");
         }
-        else if (type == 2){
-            freeBlk = new BSTree(); // Initiates the sentinel root node.
-            allocBlk = new BSTree();
-            freeBlk.Insert(0, size, size);
-            // Initially free list has only one block with all the memory
+        return startAddr + offset;
+    }
+
+    public byte getByte(int startAddr, int offset) { return data.get(locate(startAddr, offset, 1)); }
+
+    public void putByte(int startAddr, int offset, byte value) { data.put(locate(startAddr, offset, 1), value); }
+
+    public int getInt(int startAddr, int offset) { return data.getInt(locate(startAddr, offset, 4)); }
+
+    public void putInt(int startAddr, int offset, int value) { data.putInt(locate(startAddr, offset, 4), value); }
+
+    public long getLong(int startAddr, int offset) { return data.getLong(locate(startAddr, offset, 8)); }
+
+    public void putLong(int startAddr, int offset, long value) { data.putLong(locate(startAddr, offset, 8), value); }
+
+    // Copies length bytes from offset fromOffset of the block at fromAddr to offset toOffset of the block at toAddr.
+    // The two ranges may overlap (within one block).
+    public void copy(int fromAddr, int fromOffset, int toAddr, int toOffset, int length) {
+        int from = locate(fromAddr, fromOffset, length), to = locate(toAddr, toOffset, length);
+        data.put(to, data, from, length);
+    }
+
+    // Returns a buffer sharing the bytes of the block allocated at startAddr: index 0 is its first byte, and its
+    // capacity is the size of the block. Throws IndexOutOfBoundsException if no block is allocated there.
+    public ByteBuffer slice(int startAddr) {
+        int blockSize = BlockSize(startAddr);
+        if(blockSize == -1) throw new IndexOutOfBoundsException("no block allocated at " + startAddr);
+        return data.slice(startAddr, blockSize).order(ByteOrder.nativeOrder());
+    }
+
+    // Inserts the n entries (address[i], size[i], key[i]) in the empty dictionary d. They must be sorted by key and
+    // then by address: a Tree is then built directly in O(n).
+    protected static void fill(Dictionary d, int address[], int size[], int key[], int n) {
+        if(d instanceof Tree) ((Tree)d).Build(address, size, key, n);
+        else for(int i = 0; i < n; i++) d.Insert(address[i], size[i], key[i]);
+    }
+
+    // Resizes the block allocated at startAddr to newSize, keeping its first min(old size, newSize) bytes.
+    // Returns the address of the block, which changes only when it had to be moved, or -1 if there is no block at
+    // startAddr, newSize <= 0, or there is no space for the block; the old block is then left as it was.
+    // TC => the in-place paths of the allocator, or Allocate + Free + O(size) for a move.
+    public int Reallocate(int startAddr, int newSize) {
+        int size = BlockSize(startAddr);
+        if((size == -1) || (newSize <= 0)) return -1;
+        if(newSize <= size){
+            if(newSize < size) shrinkInPlace(startAddr, size, newSize);
+            shrinks.incrementAndGet();
+            return startAddr;
         }
-        else{
-            freeBlk = new AVLTree();
-            allocBlk = new AVLTree();
-            freeBlk.Insert(0, size, size);
-            // Initially free list has only one block with all the memory
-        } 
+        if(growInPlace(startAddr, size, newSize)){
+            grows.incrementAndGet();
+            return startAddr;
+        }
+        int address = Allocate(newSize);
+        if(address == -1) return -1;
+        data.put(address, data, startAddr, size);
+        Free(startAddr);
+        moves.incrementAndGet();
+        return address;
+    }
+
+    // Shrinks the block of the given size allocated at startAddr to newSize < size, and returns true, or returns false
+    // if the allocator keeps the block whole. The default keeps it.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        return false;
     }
 
+    // Grows the block of the given size allocated at startAddr to newSize > size with the free memory right after it,
+    // and returns true, or returns false if that is not possible. The default never grows a block in place.
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        return false;
+    }
+
+    // Number of Reallocate calls served in place with a size no larger than the block (shrinks).
+    public long getReallocShrinks() { return shrinks.get(); }
+
+    // Number of Reallocate calls which grew the block in place.
+    public long getReallocGrows() { return grows.get(); }
+
+    // Number of Reallocate calls which moved the block to a new address.
+    public long getReallocMoves() { return moves.get(); }
+
    public abstract int Allocate(int blockSize);
 
        // This function should allocate a contiguous array of size blockSize and return the first address. 
@@ -0,0 +1,103 @@
+// Class: FirstFitDynamicMem
+// Address-ordered first-fit allocator implementing DynamicMem.
+// freeBlk is always an AVLTree indexed by address (key = address). Every node of the tree also keeps the largest block
+// size in its subtree, so FindFit returns the free block with the lowest address that can hold a request in O(logn),
+// instead of scanning the blocks in address order.
+// The same tree gives the address neighbours of a freed block: the block starting at its end (exact Find) and the block
+// right before it (FindBefore). Free merges them at once, so the free blocks never touch and Defragment has nothing to do.
+// allocBlk uses dict_type (or alloc_type) as usual.
+// Subclasses choose another block in place (see PlacementDynamicMem), and keep extra indexes in addFree/removeFree.
+
+public class FirstFitDynamicMem extends A1DynamicMem {
+
+    public FirstFitDynamicMem() { this(M, 1); }
+
+    public FirstFitDynamicMem(int size) { this(size, 1); }
+
+    public FirstFitDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type); }
+
+    public FirstFitDynamicMem(int size, int dict_type, int alloc_type) {
+        super(size, dict_type, alloc_type);
+        freeBlk = new AVLTree();            // Replaces the size-indexed dictionary built by DynamicMem
+        freeBlk.Insert(0, size, 0);
+    }
+
+    // Inserts a free block in the free blocks dictionary.
+    protected void addFree(int address, int size){
+        freeBlk.Insert(address, size, address);
+    }
+
+    // Removes a free block, given by its node in freeBlk.
+    protected void removeFree(AVLTree block){
+        freeBlk.DeleteNode(block);
+    }
+
+    // Chooses the free block to allocate blockSize from, null if there is none: the one with the lowest address.
+    protected AVLTree place(int blockSize){
+        return ((AVLTree)freeBlk).FindFit(blockSize);
+    }
+
+    // Allocates from the block chosen by place, split if it is larger. TC => O(logn).
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        AVLTree match = place(blockSize);
+        if(match == null) return -1;
+        int address = match.address, size = match.size;
+        removeFree(match);
+        if(size > blockSize) addFree(address+blockSize, size-blockSize);
+        allocBlk.Insert(address, blockSize, address);
+        return address;
+    }
+
+    // return 0 if successful, -1 otherwise
+    // The block is merged with the free blocks right after and right before it. TC => O(logn).
+    public int Free(int startAddr) {
+        Dictionary match = allocBlk.Find(startAddr, true);
+        if(match == null) return -1;
+        int address = match.address, size = match.size;
+        allocBlk.DeleteNode(match);
+        release(address, size);
+        return 0;
+    }
+
+    // Adds the block [address, address + size) to the free blocks, merged with the free blocks right after and right
+    // before it. TC => O(logn).
+    protected void release(int address, int size) {
+        AVLTree tree = (AVLTree)freeBlk;
+        AVLTree next = tree.Find(address+size, true);
+        if(next != null){
+            size += next.size;
+            removeFree(next);
+        }
+        AVLTree prev = tree.FindBefore(address);
+        if((prev != null) && (prev.address + prev.size == address)){
+            address = prev.address;
+            size += prev.size;
+            removeFree(prev);
+        }
+        addFree(address, size);
+    }
+
+    // The tail is released, i.e. merged with the free block after it. TC => O(logn).
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        resizeAllocated(startAddr, newSize);
+        release(startAddr + newSize, size - newSize);
+        return true;
+    }
+
+    // The free block after the block is found by exact search in freeBlk. TC => O(logn).
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        AVLTree next = ((AVLTree)freeBlk).Find(startAddr + size, true);
+        if((next == null) || (next.size < newSize - size)) return false;
+        int total = size + next.size;
+        removeFree(next);
+        resizeAllocated(startAddr, newSize);
+        if(total > newSize) addFree(startAddr + newSize, total - newSize);
+        return true;
+    }
+
+    // Free blocks are merged eagerly in Free, so there is never anything left to defragment.
+    public void Defragment() {
+        return ;
+    }
+}
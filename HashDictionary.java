@@ -0,0 +1,192 @@
+// Class: HashDictionary
+// Implementation of Dictionary using an open-addressing hash table on the key, for exact lookups in O(1) expected time.
+// It is meant for the allocated blocks dictionary, which is only ever searched by exact address.
+// Entries are stored in parallel primitive arrays (no boxing), with linear probing. Deletion shifts the following
+// entries of the probe sequence back, so the table never contains tombstones. The table doubles when it is half full.
+// Keys are unique: Insert returns null if the key is already present.
+
+// Insert, Find, getFirst and getNext return a cursor: one element object per dictionary, which is moved to the entry
+// found and is valid until the next call on the dictionary. Deleting through the cursor (Delete/DeleteNode) and the
+// usual traversal loop work as with the other dictionaries:
+//     count = 0; for (d = dict.getFirst(); d != null; d = d.getNext()) count = count + 1;
+// The traversal visits the entries in table order, not in key order.
+
+public class HashDictionary extends Dictionary {
+
+    // Storage shared by the dictionary and its cursor.
+    private static final class Table {
+        int keys[], addresses[], sizes[];
+        boolean filled[];
+        int count;                  // Number of entries
+        int mask;                   // Capacity - 1, the capacity is a power of two
+        HashDictionary cursor;      // The element returned by all the functions of this dictionary
+
+        Table(int capacity){
+            keys = new int[capacity];
+            addresses = new int[capacity];
+            sizes = new int[capacity];
+            filled = new boolean[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final Table t;
+    private int slot;               // Slot of the entry the cursor points to, -1 for the dictionary itself
+
+    public HashDictionary() {
+        super(-1, -1, -1);
+        t = new Table(16);
+        slot = -1;
+    }
+
+    private HashDictionary(Table t) {
+        super(-1, -1, -1);
+        this.t = t;
+        this.slot = -1;
+    }
+
+    // Home slot of a key. Multiplicative hashing spreads consecutive keys (addresses) over the table. TC => O(1).
+    private int home(int key){
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & t.mask;
+    }
+
+    // Returns the slot holding the key, -1 if it is not present. TC => O(1) expected.
+    private int slotOf(int key){
+        for(int i = home(key); t.filled[i]; i = (i + 1) & t.mask){
+            if(t.keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    // Moves the cursor to slot i and returns it, or returns null if i == -1. TC => O(1).
+    private HashDictionary cursor(int i){
+        if(i == -1) return null;
+        HashDictionary c = t.cursor;
+        if(c == null) c = t.cursor = new HashDictionary(t);
+        c.slot = i;
+        c.key = t.keys[i];
+        c.address = t.addresses[i];
+        c.size = t.sizes[i];
+        return c;
+    }
+
+    // Stores an entry in the first free slot of its probe sequence, the key must not be present. TC => O(1) expected.
+    private int place(int address, int size, int key){
+        int i = home(key);
+        while(t.filled[i]) i = (i + 1) & t.mask;
+        t.keys[i] = key;
+        t.addresses[i] = address;
+        t.sizes[i] = size;
+        t.filled[i] = true;
+        t.count++;
+        return i;
+    }
+
+    // Doubles the capacity and re-inserts every entry. TC => O(n).
+    private void grow(){
+        int keys[] = t.keys, addresses[] = t.addresses, sizes[] = t.sizes;
+        boolean filled[] = t.filled;
+        int capacity = 2 * keys.length;
+        t.keys = new int[capacity];
+        t.addresses = new int[capacity];
+        t.sizes = new int[capacity];
+        t.filled = new boolean[capacity];
+        t.mask = capacity - 1;
+        t.count = 0;
+        for(int i = 0; i < keys.length; i++){
+            if(filled[i]) place(addresses[i], sizes[i], keys[i]);
+        }
+    }
+
+    // Empties slot i and shifts back the entries after it whose probe sequence passes through i. TC => O(1) expected.
+    private void removeSlot(int i){
+        int hole = i;
+        for(int j = (i + 1) & t.mask; t.filled[j]; j = (j + 1) & t.mask){
+            int h = home(t.keys[j]);
+            // The entry at j may move to the hole iff its home is not in the cyclic range (hole, j]
+            if(((j - h) & t.mask) >= ((j - hole) & t.mask)){
+                t.keys[hole] = t.keys[j];
+                t.addresses[hole] = t.addresses[j];
+                t.sizes[hole] = t.sizes[j];
+                hole = j;
+            }
+        }
+        t.filled[hole] = false;
+        t.keys[hole] = t.addresses[hole] = t.sizes[hole] = 0;
+        t.count--;
+    }
+
+    public HashDictionary Insert(int address, int size, int key)
+    {
+        if(slotOf(key) != -1) return null;          // Key already present in the dictionary
+        if(2 * (t.count + 1) > t.keys.length) grow();
+        return cursor(place(address, size, key));
+    }
+
+    public boolean Delete(Dictionary d)
+    {
+        if(d == null) return false;
+        int i = slotOf(d.key);
+        if((i == -1) || (t.addresses[i] != d.address) || (t.sizes[i] != d.size)) return false;
+        removeSlot(i);
+        return true;
+    }
+
+    // The cursor already knows its slot, so the probe sequence is not searched again.
+    public boolean DeleteNode(Dictionary d)
+    {
+        if((d == t.cursor) && (d != null) && (slot == -1)){
+            HashDictionary c = (HashDictionary)d;
+            int i = c.slot;
+            if((i != -1) && t.filled[i] && (t.keys[i] == c.key) && (t.addresses[i] == c.address) && (t.sizes[i] == c.size)){
+                removeSlot(i);
+                c.slot = -1;
+                return true;
+            }
+        }
+        return Delete(d);
+    }
+
+    // The exact search is a hash lookup. The approximate search has no order to use, and scans the whole table for
+    // the entry with the smallest key >= k: it works, but a tree should be used where it matters.
+    public HashDictionary Find(int k, boolean exact)
+    {
+        if(exact) return cursor(slotOf(k));
+        int best = -1;
+        for(int i = 0; i < t.keys.length; i++){
+            if(t.filled[i] && (t.keys[i] >= k) && ((best == -1) || (t.keys[i] < t.keys[best]))) best = i;
+        }
+        return cursor(best);
+    }
+
+    public HashDictionary getFirst()
+    {
+        for(int i = 0; i < t.keys.length; i++){
+            if(t.filled[i]) return cursor(i);
+        }
+        return null;
+    }
+
+    public HashDictionary getNext()
+    {
+        if(slot == -1) return null;                 // getNext() called on the dictionary itself
+        for(int i = slot + 1; i < t.keys.length; i++){
+            if(t.filled[i]) return cursor(i);
+        }
+        return null;
+    }
+
+    // Checks that the count is right and that every entry can be reached from its home slot. TC => O(n) expected.
+    public boolean sanity()
+    {
+        if(Integer.bitCount(t.keys.length) != 1 || (t.mask != t.keys.length - 1)) return false;
+        int n = 0;
+        for(int i = 0; i < t.keys.length; i++){
+            if(!t.filled[i]) continue;
+            n++;
+            if(slotOf(t.keys[i]) != i) return false;
+        }
+        return (n == t.count) && (2 * n <= t.keys.length);
+    }
+}
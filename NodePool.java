@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+// Class: NodePool
+// Bounded stack of deleted dictionary nodes.
+// A dictionary gives its deleted nodes to its pool, and takes them back in Insert instead of allocating a new node.
+// Under a steady stream of inserts and deletes, the pool serves almost every insert and no garbage is created.
+// The pool holds at most capacity nodes; nodes given to a full pool are simply dropped.
+
+public class NodePool {
+
+    public final static int DEFAULT_CAPACITY = 1024;
+
+    private Dictionary nodes[];     // nodes[0 .. count-1] are the pooled nodes
+    private int count;
+    private int capacity;           // Maximum number of pooled nodes
+    private long hits, misses;      // Number of take() calls which returned a node / found the pool empty
+
+    public NodePool() { this(DEFAULT_CAPACITY); }
+
+    public NodePool(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.nodes = new Dictionary[Math.min(this.capacity, 16)];
+    }
+
+    // Returns a pooled node, or null if the pool is empty (the caller then allocates a new node). TC => O(1).
+    public Dictionary take() {
+        if(count == 0){
+            misses++;
+            return null;
+        }
+        hits++;
+        Dictionary d = nodes[--count];
+        nodes[count] = null;
+        return d;
+    }
+
+    // Keeps a deleted node for reuse, unless the pool is full. The node must already be detached from its dictionary.
+    // TC => O(1) amortized.
+    public void give(Dictionary d) {
+        if(count >= capacity) return;
+        if(count == nodes.length) nodes = Arrays.copyOf(nodes, Math.min(Math.max(2*count, 16), capacity));
+        nodes[count++] = d;
+    }
+
+    // Changes the maximum number of pooled nodes, dropping the nodes above the new capacity. 0 disables pooling.
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        while(count > this.capacity) nodes[--count] = null;
+    }
+
+    public int getCapacity() { return capacity; }
+
+    public int getSize() { return count; }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Class: PersistentDynamicMem
+// A2DynamicMem whose memory is a memory-mapped file, which also holds the block boundaries, so that a process can
+// reopen the file and get back both its blocks and their contents.
+// Layout of the file:
+//     header (HEADER bytes): magic, version, capacity, and a journal record for the last Allocate
+//     start bitmap: bit a is set iff a block starts at address a
+//     allocated bitmap: bit a is set iff an allocated block starts at address a
+//     data: capacity bytes, from the first page boundary after the bitmaps
+// The blocks of the bitmaps tile the memory. Each allocated block is an element of allocBlk; free memory may be split
+// into more blocks than in freeBlk, since merging free blocks does not touch the file.
+// Opening an existing file rebuilds allocBlk and freeBlk in one sequential scan of the bitmaps, word by word: the
+// allocated blocks come out in address order, and contiguous free blocks are merged, so freeBlk starts defragmented.
+// TC => O(capacity/64 + n logn) for n blocks, instead of replaying the history of the heap.
+
+// Free clears one bit, a single store. Allocate changes several words: it first writes a journal record of the block,
+// then makes the block an entry of the start bitmap, and only then sets its allocated bit, which commits it; every
+// prefix of these stores leaves a valid file. When a file is opened, a valid journal record whose allocated bit is set
+// is redone, in case the other stores were lost (torn write), and the bitmaps are checked: allocated bits not on a
+// block start are cleared. The number of repairs is available from getRepairs.
+// Stores reach the file when the process dies; Sync forces them to the disk, e.g. before a power loss.
+
+public class PersistentDynamicMem extends A2DynamicMem {
+
+    private final static int MAGIC = 0x444d454d;        // "DMEM"
+    private final static int FORMATTING = 0x444d4546;   // "DMEF", in place of MAGIC while a file is being formatted
+    private final static int VERSION = 1;
+    private final static int HEADER = 32;               // Size of the header, the bitmaps follow it
+    private final static int PAGE = 4096;
+    private final static int J_OP = 16, J_ADDRESS = 20, J_SIZE = 24, J_CHECK = 28;  // Journal record in the header
+    private final static int ALLOC = 1;                 // Journal operation of Allocate, 0 when the record is empty
+
+    private FileChannel channel;
+    private MappedByteBuffer meta;                      // Header and bitmaps
+    private MappedByteBuffer contents;                  // Data of the blocks
+    private int capacity;                               // Number of addresses
+    private int words;                                  // Number of longs of each bitmap
+    private int startBits, allocBits;                   // Offsets of the bitmaps in meta
+    private int repairs;                                // Repairs made when the file was opened
+
+    public PersistentDynamicMem(String path, int size) throws IOException { this(path, size, 3); }
+
+    public PersistentDynamicMem(String path, int size, int dict_type) throws IOException {
+        this(path, size, dict_type, dict_type);
+    }
+
+    // Opens the heap stored in the file at path, or creates it with size addresses if the file is new or empty.
+    // The size of an existing heap is the one stored in the file. Throws an IOException, and leaves the file as it
+    // was, if it is not empty and does not hold a heap.
+    public PersistentDynamicMem(String path, int size, int dict_type, int alloc_type) throws IOException {
+        super(capacityOf(path, size), dict_type, alloc_type, NO_MEMORY);     // The memory is the mapped file
+        capacity = capacity();
+        words = (capacity + 63) >>> 6;
+        startBits = HEADER;
+        allocBits = HEADER + 8*words;
+        long metaSize = HEADER + 16L*words;
+        long dataOffset = (metaSize + PAGE - 1) / PAGE * PAGE;
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE);
+        try{
+            meta = channel.map(FileChannel.MapMode.READ_WRITE, 0, metaSize);
+            meta.order(ByteOrder.LITTLE_ENDIAN);
+            contents = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset, capacity);
+            useBuffer(contents);
+            if(meta.getInt(0) == MAGIC){
+                if((meta.getInt(4) != VERSION) || (meta.getInt(8) != capacity)){
+                    throw new IOException(path + ": bad header");
+                }
+                recover();
+                rebuild();
+            }
+            else format();
+        }
+        catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Size of the heap stored in the file at path, or size if the file is new, empty, or was being formatted.
+    // Throws an IOException if the file holds something else.
+    private static int capacityOf(String path, int size) throws IOException {
+        Path file = Paths.get(path);
+        if(!Files.exists(file) || (Files.size(file) == 0)) return size;
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && (in.read(header) > 0));
+            int magic = header.hasRemaining() ? 0 : header.getInt(0);
+            if(magic == MAGIC) return header.getInt(8);
+            if(magic == FORMATTING) return size;
+            throw new IOException(path + ": not a PersistentDynamicMem heap");
+        }
+    }
+
+    // Helper functions below : bitmaps.
+
+    private boolean test(int bits, int a){
+        return (meta.getLong(bits + 8*(a >>> 6)) & (1L << a)) != 0;
+    }
+
+    private void set(int bits, int a){
+        int at = bits + 8*(a >>> 6);
+        meta.putLong(at, meta.getLong(at) | (1L << a));
+    }
+
+    private void clear(int bits, int a){
+        int at = bits + 8*(a >>> 6);
+        meta.putLong(at, meta.getLong(at) & ~(1L << a));
+    }
+
+    // Clears the bits from, ..., to-1. TC => O(1 + (to - from)/64).
+    private void clearRange(int bits, int from, int to){
+        while(from < to){
+            int at = bits + 8*(from >>> 6);
+            int end = Math.min(to, ((from >>> 6) + 1) << 6);
+            long mask = (end - from == 64) ? -1L : ((1L << (end - from)) - 1) << from;
+            long word = meta.getLong(at);
+            if((word & mask) != 0) meta.putLong(at, word & ~mask);
+            from = end;
+        }
+    }
+
+    // Returns the first set bit >= from, capacity if there is none. TC => O(1 + (result - from)/64).
+    private int nextSet(int bits, int from){
+        if(from >= capacity) return capacity;
+        int i = from >>> 6;
+        long word = meta.getLong(bits + 8*i) & (-1L << from);
+        while(word == 0){
+            if(++i == words) return capacity;
+            word = meta.getLong(bits + 8*i);
+        }
+        return Math.min(capacity, (i << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    // Helper functions below : file state.
+
+    private static int checksum(int op, int address, int size){
+        return MAGIC ^ (op * 0x27d4eb2d) ^ (address * 0x9e3779b9) ^ (size * 0x85ebca6b);
+    }
+
+    // Writes the header of an empty heap: one free block covering the memory. The file is marked as being formatted
+    // first, and the magic number is written last, so a file whose formatting was interrupted is formatted again.
+    private void format(){
+        meta.putInt(0, FORMATTING);
+        for(int at = 4; at < HEADER + 16*words; at += 4) meta.putInt(at, 0);
+        meta.putInt(4, VERSION);
+        meta.putInt(8, capacity);
+        if(capacity > 0) set(startBits, 0);
+        VarHandle.storeStoreFence();
+        meta.putInt(0, MAGIC);
+    }
+
+    // Makes [address, address + size) an allocated block of the bitmaps. Doing it again has no effect.
+    private void markAllocated(int address, int size){
+        set(startBits, address);
+        clearRange(startBits, address + 1, address + size);
+        if(address + size < capacity) set(startBits, address + size);
+        VarHandle.storeStoreFence();
+        set(allocBits, address);                        // Commits the block
+    }
+
+    // Redoes the Allocate in the journal if it was committed, and repairs the bitmaps.
+    private void recover(){
+        int op = meta.getInt(J_OP), address = meta.getInt(J_ADDRESS), size = meta.getInt(J_SIZE);
+        if((op == ALLOC) && (meta.getInt(J_CHECK) == checksum(op, address, size)) && (address >= 0) && (size > 0) &&
+            (size <= capacity - address) && test(allocBits, address)){
+            markAllocated(address, size);
+            repairs++;
+        }
+        meta.putInt(J_OP, 0);
+        if((capacity > 0) && !test(startBits, 0)){
+            set(startBits, 0);
+            repairs++;
+        }
+        for(int i = 0; i < words; i++){
+            long valid = meta.getLong(startBits + 8*i);
+            if((i == words - 1) && ((capacity & 63) != 0)) valid &= (1L << capacity) - 1;
+            long stray = meta.getLong(allocBits + 8*i) & ~valid;
+            if(stray != 0){
+                meta.putLong(allocBits + 8*i, meta.getLong(allocBits + 8*i) & ~stray);
+                repairs += Long.bitCount(stray);
+            }
+        }
+    }
+
+    // Fills allocBlk and freeBlk from the bitmaps, in one pass over them.
+    private void rebuild(){
+        int allocAddress[] = new int[64], allocSize[] = new int[64], n = 0;
+        long free[] = new long[64];                     // (size << 32) | address, to sort the free blocks by size
+        int m = 0;
+        for(int a = 0; a < capacity; ){
+            int e = nextSet(startBits, a + 1);
+            if(test(allocBits, a)){
+                if(n == allocAddress.length){
+                    allocAddress = Arrays.copyOf(allocAddress, 2*n);
+                    allocSize = Arrays.copyOf(allocSize, 2*n);
+                }
+                allocAddress[n] = a;
+                allocSize[n++] = e - a;
+            }
+            else{
+                while((e < capacity) && !test(allocBits, e)) e = nextSet(startBits, e + 1);
+                if(m == free.length) free = Arrays.copyOf(free, 2*m);
+                free[m++] = ((long)(e - a) << 32) | a;
+            }
+            a = e;
+        }
+        Arrays.sort(free, 0, m);
+        int freeAddress[] = new int[m], freeSize[] = new int[m];
+        for(int i = 0; i < m; i++){
+            freeSize[i] = (int)(free[i] >>> 32);
+            freeAddress[i] = (int)free[i];
+        }
+        freeBlk.Delete(freeBlk.getFirst());             // The block inserted by the constructor of DynamicMem
+        fill(freeBlk, freeAddress, freeSize, freeSize, m);
+        fill(allocBlk, allocAddress, allocSize, allocAddress, n);
+    }
+
+    public int Allocate(int blockSize) {
+        int address = super.Allocate(blockSize);
+        if(address == -1) return -1;
+        meta.putInt(J_ADDRESS, address);
+        meta.putInt(J_SIZE, blockSize);
+        meta.putInt(J_CHECK, checksum(ALLOC, address, blockSize));
+        meta.putInt(J_OP, ALLOC);
+        VarHandle.storeStoreFence();
+        markAllocated(address, blockSize);
+        VarHandle.storeStoreFence();
+        meta.putInt(J_OP, 0);
+        return address;
+    }
+
+    // return 0 if successful, -1 otherwise
+    public int Free(int startAddr) {
+        if(super.Free(startAddr) != 0) return -1;
+        clear(allocBits, startAddr);                    // The block is free in the file once this store is done
+        return 0;
+    }
+
+    // The tail is free in the file once its start bit is set, a single store; the allocated bit of the block stays set.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        super.shrinkInPlace(startAddr, size, newSize);
+        set(startBits, startAddr + newSize);
+        return true;
+    }
+
+    // Number of repairs made by the recovery when the file was opened.
+    public int getRepairs() {
+        return repairs;
+    }
+
+    // Checks that the bitmaps of the file describe the same allocated blocks as allocBlk, and as much free memory as
+    // freeBlk. Blocks held by a running DefragmentStep pass are not in freeBlk. TC => O(capacity/64 + n log n).
+    public boolean Verify() {
+        long freeMemory = 0, freeInBlk = 0;
+        int allocated = 0, inBlk = 0;
+        for(int a = 0; a < capacity; ){
+            int e = nextSet(startBits, a + 1);
+            if(test(allocBits, a)){
+                Dictionary match = allocBlk.Find(a, true);
+                if((match == null) || (match.size != e - a)) return false;
+                allocated++;
+            }
+            else freeMemory += e - a;
+            a = e;
+        }
+        for(Dictionary d = allocBlk.getFirst(); d != null; d = d.getNext()) inBlk++;
+        for(Dictionary d = freeBlk.getFirst(); d != null; d = d.getNext()) freeInBlk += d.size;
+        return (allocated == inBlk) && (freeMemory == freeInBlk);
+    }
+
+    // Forces the changes made to the file to the disk.
+    public void Sync() {
+        meta.force();
+        contents.force();
+    }
+
+    // Syncs and closes the file. The allocator must not be used afterwards.
+    public void Close() throws IOException {
+        Sync();
+        channel.close();
+    }
+}
@@ -0,0 +1,78 @@
+// Class: PlacementDynamicMem
+// FirstFitDynamicMem with a placement policy chosen per instance:
+//   FIRST_FIT -- the free block with the lowest address that is large enough
+//   NEXT_FIT  -- the same, starting from the end of the last allocated block and wrapping around (roving pointer)
+//   BEST_FIT  -- the smallest free block that is large enough (lowest address among equal sizes)
+//   WORST_FIT -- the largest free block (lowest address among equal sizes)
+// Every policy finds its block in O(logn):
+//   first and next fit search the address-indexed freeBlk by the largest size kept in every subtree (FindFit),
+//   worst fit reads the largest size at the root and finds the first block of that size the same way,
+//   best fit needs an order by size, so it keeps a second AVLTree of the free blocks indexed by size.
+// Free blocks are coalesced in Free as in FirstFitDynamicMem, whatever the policy.
+
+public class PlacementDynamicMem extends FirstFitDynamicMem {
+
+    public final static int FIRST_FIT = 1;
+    public final static int NEXT_FIT = 2;
+    public final static int BEST_FIT = 3;
+    public final static int WORST_FIT = 4;
+
+    private int policy;                                 // One of the constants above
+    private int rover;                                  // Next fit: where the next search starts
+    private AVLTree bySize;                             // Best fit: free blocks indexed by size, null otherwise
+    private Dictionary probe = new A1List(0, 0, 0);     // Detached element, used to delete a block by value
+
+    public PlacementDynamicMem() { this(M, 1); }
+
+    public PlacementDynamicMem(int size) { this(size, 1); }
+
+    public PlacementDynamicMem(int size, int dict_type) { this(size, dict_type, dict_type, FIRST_FIT); }
+
+    public PlacementDynamicMem(int size, int dict_type, int alloc_type, int policy) {
+        super(size, dict_type, alloc_type);
+        this.policy = policy;
+        if(policy == BEST_FIT){
+            bySize = new AVLTree();
+            bySize.Insert(0, size, size);
+        }
+    }
+
+    public int getPolicy() { return policy; }
+
+    protected void addFree(int address, int size){
+        super.addFree(address, size);
+        if(bySize != null) bySize.Insert(address, size, size);
+    }
+
+    protected void removeFree(AVLTree block){
+        if(bySize != null){
+            probe.address = block.address;
+            probe.size = probe.key = block.size;
+            bySize.Delete(probe);
+        }
+        super.removeFree(block);
+    }
+
+    // TC => O(logn) for every policy.
+    protected AVLTree place(int blockSize){
+        AVLTree tree = (AVLTree)freeBlk;
+        if(policy == NEXT_FIT){
+            AVLTree match = tree.FindFit(blockSize, rover);
+            return (match != null) ? match : tree.FindFit(blockSize);
+        }
+        else if(policy == BEST_FIT){
+            Dictionary match = bySize.Find(blockSize, false);
+            return (match != null) ? tree.Find(match.address, true) : null;
+        }
+        else if(policy == WORST_FIT){
+            return tree.FindFit(Math.max(blockSize, tree.getMaxSize()));
+        }
+        return tree.FindFit(blockSize);
+    }
+
+    public int Allocate(int blockSize) {
+        int address = super.Allocate(blockSize);
+        if(address != -1) rover = address + blockSize;
+        return address;
+    }
+}
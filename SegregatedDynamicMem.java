@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+// Class: SegregatedDynamicMem
+// Extends A2DynamicMem with exact-size bins (segregated free lists) for small blocks.
+// A freed block of size <= MAX_BIN_SIZE is pushed on the bin of its size instead of being inserted into freeBlk,
+// and a later request of the same size pops it back in O(1), without searching freeBlk.
+// Large requests, and small requests whose bin is empty, go through the general freeBlk path of A1DynamicMem.
+// Blocks sitting in the bins are still free memory: they are flushed back into freeBlk before Defragment,
+// and before an allocation is allowed to fail, so the Allocate/Free/Defragment contract of A2DynamicMem still holds.
+// Allocated blocks of size <= MAX_BIN_SIZE are not kept in allocBlk but in a table indexed by address, like the
+// boundary tags of TLSFDynamicMem, so that Free finds them in O(1) whatever the dictionary. Larger allocated blocks
+// are in allocBlk as usual.
+
+public class SegregatedDynamicMem extends A2DynamicMem {
+
+    public final static int MAX_BIN_SIZE = 64;     // Largest block size that is kept in a bin
+
+    private int bins[][];                          // bins[s] is a stack of start addresses of free blocks of size s
+    private int binCount[];                        // Number of addresses currently on bins[s]
+    private byte small[];                          // small[a] = s if an allocated block of size s <= MAX_BIN_SIZE
+                                                   // starts at a, 0 otherwise
+
+    public SegregatedDynamicMem() { super(); initBins(); }
+
+    public SegregatedDynamicMem(int size) { super(size); initBins(); }
+
+    public SegregatedDynamicMem(int size, int dict_type) { super(size, dict_type); initBins(); }
+
+    public SegregatedDynamicMem(int size, int dict_type, int alloc_type) { super(size, dict_type, alloc_type); initBins(); }
+
+    private void initBins(){
+        bins = new int[MAX_BIN_SIZE+1][];
+        binCount = new int[MAX_BIN_SIZE+1];
+        small = new byte[capacity()];
+    }
+
+    // Pushes a free block on the bin of its size, growing the stack if it is full. Amortized O(1).
+    private void push(int address, int size){
+        int stack[] = bins[size];
+        if(stack == null) stack = bins[size] = new int[8];
+        else if(binCount[size] == stack.length) stack = bins[size] = Arrays.copyOf(stack, 2*stack.length);
+        stack[binCount[size]++] = address;
+    }
+
+    // Moves every binned block back into freeBlk. Returns true if at least one block was moved.
+    private boolean flushBins(){
+        boolean moved = false;
+        for(int s = 1; s <= MAX_BIN_SIZE; s++){
+            for(int i = 0; i < binCount[s]; i++){
+                freeBlk.Insert(bins[s][i], s, s);
+                moved = true;
+            }
+            binCount[s] = 0;
+        }
+        return moved;
+    }
+
+    // Small sizes are served from their bin when it is non-empty, everything else falls back to A1DynamicMem.
+    // If the fallback fails, the bins may still hold blocks that can be split for this request, so they are flushed
+    // and the request is retried once.
+    @Override
+    public int Allocate(int blockSize) {
+        if(blockSize <= 0) return -1;
+        if((blockSize <= MAX_BIN_SIZE) && (binCount[blockSize] > 0)){
+            int address = bins[blockSize][--binCount[blockSize]];
+            small[address] = (byte)blockSize;
+            return address;
+        }
+        int address = super.Allocate(blockSize);
+        if((address == -1) && flushBins()) address = super.Allocate(blockSize);
+        return address;
+    }
+
+    // A small block found by the fallback goes straight to the table, without ever entering allocBlk. TC => O(1).
+    protected void allocated(int address, int blockSize) {
+        if(blockSize <= MAX_BIN_SIZE) small[address] = (byte)blockSize;
+        else super.allocated(address, blockSize);
+    }
+
+    // return 0 if successful, -1 otherwise
+    // TC => O(1) for a small block, the exact search in allocBlk for the others.
+    @Override
+    public int Free(int startAddr) {
+        if((startAddr >= 0) && (startAddr < small.length) && (small[startAddr] != 0)){
+            push(startAddr, small[startAddr]);
+            small[startAddr] = 0;
+            return 0;
+        }
+        Dictionary match = allocBlk.Find(startAddr, true);
+        if(match == null) return -1;
+        if(match.size <= MAX_BIN_SIZE) push(match.address, match.size);
+        else freeBlk.Insert(match.address, match.size, match.size);
+        allocBlk.DeleteNode(match);
+        return 0;
+    }
+
+    public int BlockSize(int startAddr) {
+        if((startAddr >= 0) && (startAddr < small.length) && (small[startAddr] != 0)) return small[startAddr];
+        return super.BlockSize(startAddr);
+    }
+
+    // A small block stays in the table, and its tail goes on a bin like a freed block.
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        if(small[startAddr] == 0) return super.shrinkInPlace(startAddr, size, newSize);
+        small[startAddr] = (byte)newSize;
+        push(startAddr + newSize, size - newSize);
+        return true;
+    }
+
+    // Small allocated blocks are in the table, not in allocBlk.
+    protected boolean keepsBlocksInDictionaries() {
+        return false;
+    }
+
+    // Binned blocks have to be visible to the merge pass, otherwise they could never be coalesced.
+    @Override
+    public void Defragment() {
+        flushBins();
+        super.Defragment();
+    }
+}
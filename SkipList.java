@@ -0,0 +1,231 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+// Class: SkipList
+// Lock-free skip list implementing Tree, ordered by key and then by address like the other trees.
+// Insert, Delete, Find, getFirst and getNext may be called by any number of threads at once, without a lock.
+// Every node is linked in the levels 0 .. levels-1, where levels is random (probability 1/2 to go one level up), and
+// each link is an AtomicMarkableReference: the mark on the links of a node means that the node is deleted.
+// Insert links the node at level 0 by a CAS (which makes it part of the list), and then at the upper levels.
+// Delete marks the links of the node from the top down; marking level 0 by a CAS removes it from the list, and the
+// searches which meet a marked node unlink it. Find, getFirst and getNext only read: they skip marked nodes.
+// Every operation is O(logn) expected, plus the retries caused by the concurrent operations.
+
+// The list itself is the SkipList created by the public constructor, and plays the role of the sentinel node: it is
+// the head of every level. Every node points to its sentinel, like in SplayTree.
+// Deleted nodes are not recycled, since another thread may still be reading them: the garbage collector frees them
+// once no thread can reach them, which also rules out the ABA problem for the CASes.
+// Build and sanity must not run concurrently with other operations.
+
+public class SkipList extends Tree {
+
+    public final static int MAX_LEVEL = 24;     // Largest number of levels of a node, enough for 2^24 elements
+
+    private final AtomicMarkableReference<SkipList> next[];  // next[i] is the successor at level i, null at the end
+    private final SkipList list;                // The sentinel of the list
+
+    public SkipList() {
+        super();
+        list = this;
+        next = links(MAX_LEVEL);
+    }
+
+    private SkipList(int address, int size, int key, int levels, SkipList list) {
+        super(address, size, key);
+        this.list = list;
+        next = links(levels);
+    }
+
+    // Helper functions below :
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicMarkableReference<SkipList>[] links(int levels){
+        AtomicMarkableReference<SkipList> next[] = new AtomicMarkableReference[levels];
+        for(int i = 0; i < levels; i++) next[i] = new AtomicMarkableReference<SkipList>(null, false);
+        return next;
+    }
+
+    // Random number of levels of a new node: 1 with probability 1/2, 2 with probability 1/4, ... TC => O(1).
+    private static int randomLevels(){
+        return Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | (1 << (MAX_LEVEL - 1))) + 1;
+    }
+
+    // Returns true if node a comes before (key, address), ordering by key and then by address. TC => O(1).
+    private static boolean before(SkipList a, int key, int address){
+        return (a.key < key) || ((a.key == key) && (a.address < address));
+    }
+
+    // Fills preds[i] and succs[i] with the nodes at level i between which (key, address) belongs: the last node before
+    // it and the first one not before it (null at the end). Marked nodes met on the way are unlinked; if one can not be
+    // because its predecessor changed, the search starts again. Returns true if succs[0] holds (key, address).
+    private boolean search(int key, int address, SkipList preds[], SkipList succs[]){
+        boolean marked[] = new boolean[1];
+        retry:
+        while(true){
+            SkipList pred = list;
+            for(int level = MAX_LEVEL - 1; level >= 0; level--){
+                SkipList curr = pred.next[level].getReference();
+                while(curr != null){
+                    SkipList succ = curr.next[level].get(marked);
+                    while(marked[0]){
+                        if(!pred.next[level].compareAndSet(curr, succ, false, false)) continue retry;
+                        curr = succ;
+                        if(curr == null) break;
+                        succ = curr.next[level].get(marked);
+                    }
+                    if((curr != null) && before(curr, key, address)){
+                        pred = curr;
+                        curr = succ;
+                    }
+                    else break;
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return (succs[0] != null) && (succs[0].key == key) && (succs[0].address == address);
+        }
+    }
+
+    // Returns the first node which is not deleted and not before (key, address), null if there is none.
+    // Only reads the links: marked nodes are stepped over instead of unlinked. TC => O(logn) expected.
+    private SkipList lowerBound(int key, int address){
+        boolean marked[] = new boolean[1];
+        SkipList pred = list, curr = null;
+        for(int level = MAX_LEVEL - 1; level >= 0; level--){
+            curr = pred.next[level].getReference();
+            while(curr != null){
+                SkipList succ = curr.next[level].get(marked);
+                while(marked[0] && (succ != null)){
+                    curr = succ;
+                    succ = curr.next[level].get(marked);
+                }
+                if(marked[0]){                  // curr, the last node of the level, is deleted
+                    curr = null;
+                    break;
+                }
+                if(before(curr, key, address)){
+                    pred = curr;
+                    curr = succ;
+                }
+                else break;
+            }
+        }
+        return curr;
+    }
+
+    // First node from a on which is not deleted, null if there is none. TC => O(number of deleted nodes skipped).
+    private static SkipList live(SkipList a){
+        while((a != null) && a.next[0].isMarked()) a = a.next[0].getReference();
+        return a;
+    }
+
+    public SkipList Insert(int address, int size, int key)
+    {
+        SkipList preds[] = new SkipList[MAX_LEVEL], succs[] = new SkipList[MAX_LEVEL];
+        int levels = randomLevels();
+        SkipList node = new SkipList(address, size, key, levels, list);
+        while(true){
+            if(search(key, address, preds, succs)) return null;     // Node already present in the list
+            for(int level = 0; level < levels; level++) node.next[level].set(succs[level], false);
+            if(preds[0].next[0].compareAndSet(succs[0], node, false, false)) break;
+        }
+        // The node is in the list: link it at the upper levels, unless it gets deleted meanwhile
+        boolean marked[] = new boolean[1];
+        for(int level = 1; level < levels; level++){
+            while(true){
+                SkipList succ = succs[level];
+                SkipList curr = node.next[level].get(marked);
+                if(marked[0]) return node;
+                if((curr != succ) && !node.next[level].compareAndSet(curr, succ, false, false)) continue;
+                if(preds[level].next[level].compareAndSet(succ, node, false, false)) break;
+                search(key, address, preds, succs);
+            }
+        }
+        return node;
+    }
+
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        SkipList last[] = new SkipList[MAX_LEVEL];
+        for(int level = 0; level < MAX_LEVEL; level++) last[level] = list;
+        for(int i = 0; i < n; i++){
+            SkipList node = new SkipList(address[i], size[i], key[i], randomLevels(), list);
+            for(int level = 0; level < node.next.length; level++){
+                last[level].next[level].set(node, false);
+                last[level] = node;
+            }
+        }
+        for(int level = 0; level < MAX_LEVEL; level++) last[level].next[level].set(null, false);
+    }
+
+    public boolean Delete(Dictionary e)
+    {
+        if(e == null) return false;
+        SkipList preds[] = new SkipList[MAX_LEVEL], succs[] = new SkipList[MAX_LEVEL];
+        if(!search(e.key, e.address, preds, succs)) return false;
+        SkipList node = succs[0];
+        if(node.size != e.size) return false;
+        boolean marked[] = new boolean[1];
+        for(int level = node.next.length - 1; level > 0; level--){
+            SkipList succ = node.next[level].get(marked);
+            while(!marked[0]){
+                node.next[level].attemptMark(succ, true);
+                succ = node.next[level].get(marked);
+            }
+        }
+        // Marking level 0 deletes the node; only one of the threads deleting it at once succeeds
+        SkipList succ = node.next[0].get(marked);
+        while(true){
+            if(marked[0]) return false;
+            if(node.next[0].compareAndSet(succ, succ, false, true)){
+                search(e.key, e.address, preds, succs);     // Unlinks the node at every level
+                return true;
+            }
+            succ = node.next[0].get(marked);
+        }
+    }
+
+    public SkipList Find(int key, boolean exact)
+    {
+        SkipList node = list.lowerBound(key, Integer.MIN_VALUE);
+        if(exact && (node != null) && (node.key != key)) return null;
+        return node;
+    }
+
+    public SkipList getFirst()
+    {
+        return live(list.next[0].getReference());
+    }
+
+    public SkipList getNext()
+    {
+        if(this == list) return null;           // Corner case when getNext() is called on the sentinel node
+        return live(next[0].getReference());
+    }
+
+    // A node may stay linked at an upper level after Delete returns, if an Insert of it linked it there concurrently:
+    // such a node is marked, and the next search passing it unlinks it. Level 0 never holds a deleted node.
+    public boolean sanity()
+    {
+        if((list.key != -1) || (list.address != -1) || (list.size != -1)) return false;
+        if((list.list != list) || (list.next.length != MAX_LEVEL)) return false;
+        for(int level = MAX_LEVEL - 1; level >= 0; level--){
+            SkipList lower = list;              // Walks level-1 along with level: every live node must be on it too
+            SkipList prev = null;
+            for(SkipList a = list.next[level].getReference(); a != null; a = a.next[level].getReference()){
+                if((a.list != list) || (a.next.length <= level)) return false;
+                if((prev != null) && !before(prev, a.key, a.address)) return false;
+                prev = a;
+                if(a.next[level].isMarked() || a.next[0].isMarked()){
+                    if((level == 0) || !a.next[0].isMarked()) return false;
+                    continue;
+                }
+                if(level > 0){
+                    while((lower != null) && (lower != a)) lower = lower.next[level-1].getReference();
+                    if(lower == null) return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Random;
+
+// Class: SkipListBenchmark
+// Multi-threaded stress test of SkipList, and comparison of its throughput with an AVLTree under one lock.
+//     java SkipListBenchmark [threads [operations [keys]]]
+// Every thread (default 4) does operations (default 1000000) random calls on one shared dictionary: half Find, a
+// quarter Insert and a quarter Delete, on keys in [0, keys) (default 1024), so that the threads meet on the same keys.
+// Each thread inserts entries with addresses of its own (id, id + threads, ...), so it knows which of its entries are
+// in the dictionary, and checks every call against that:
+//     Insert must return null exactly for the entries it holds, and Delete must succeed exactly for them;
+//     Find(k, false) must return a key >= k, and Find(k, true) or Find(k, false) must return key k whenever the
+//     thread holds an entry with key k, since that entry is in the dictionary during the whole call.
+// At the end the dictionary must be sane, and hold exactly the entries held by the threads.
+// The test runs on a SkipList, and then on an AVLTree with every call inside one synchronized block.
+
+public class SkipListBenchmark {
+
+    private final static int SLOTS = 4;                 // Number of addresses of a thread per key
+
+    private static Dictionary dict;
+    private static boolean locked;
+    private static boolean held[][][];                  // held[id][k][j]: thread id holds (k, id + j * threads)
+    private static volatile String failure;             // First error found by a thread
+
+    // The element returned by the AVLTree may be changed by the next call of another thread, so insert and find read
+    // it under the lock, and return what they read.
+
+    // Returns 1 if the entry is inserted, 0 if Insert returned an element holding another entry, -1 if it returned
+    // null.
+    private static int insert(int address, int key){
+        if(!locked) return inserted(dict.Insert(address, 1, key), address, key);
+        synchronized(dict){ return inserted(dict.Insert(address, 1, key), address, key); }
+    }
+
+    private static int inserted(Dictionary d, int address, int key){
+        if(d == null) return -1;
+        return ((d.key == key) && (d.address == address)) ? 1 : 0;
+    }
+
+    private static boolean delete(Dictionary probe){
+        if(!locked) return dict.Delete(probe);
+        synchronized(dict){ return dict.Delete(probe); }
+    }
+
+    // Returns the key of the element found, -1 if there is none.
+    private static int find(int key, boolean exact){
+        if(!locked) return keyOf(dict.Find(key, exact));
+        synchronized(dict){ return keyOf(dict.Find(key, exact)); }
+    }
+
+    private static int keyOf(Dictionary d){
+        return (d == null) ? -1 : d.key;
+    }
+
+    private static void fail(String message){
+        if(failure == null) failure = message;
+    }
+
+    // Body of one thread: count[k] is the number of entries with key k it holds.
+    private static void run(int id, int threads, int operations, int keys){
+        Random random = new Random(id);
+        boolean mine[][] = held[id];
+        int count[] = new int[keys];
+        A1List probe = new A1List(0, 1, 0);
+        for(int i = 0; (i < operations) && (failure == null); i++){
+            int k = random.nextInt(keys), j = random.nextInt(SLOTS), address = id + j * threads;
+            int op = random.nextInt(4);
+            if(op == 0){
+                int r = insert(address, k);
+                if(mine[k][j] != (r == -1)) fail("thread " + id + ": Insert(" + address + ", " + k + ")");
+                else if(r == 0) fail("thread " + id + ": Insert returned a wrong element");
+                else if(r == 1){
+                    mine[k][j] = true;
+                    count[k]++;
+                }
+            }
+            else if(op == 1){
+                probe.key = k;
+                probe.address = address;
+                if(delete(probe) != mine[k][j]) fail("thread " + id + ": Delete(" + address + ", " + k + ")");
+                else if(mine[k][j]){
+                    mine[k][j] = false;
+                    count[k]--;
+                }
+            }
+            else{
+                boolean exact = (op == 2);
+                int found = find(k, exact);
+                if((found != -1) && (exact ? (found != k) : (found < k))){
+                    fail("thread " + id + ": Find(" + k + ") too small");
+                }
+                else if((count[k] > 0) && (found != k)) fail("thread " + id + ": Find(" + k + ") missed");
+            }
+        }
+    }
+
+    // Runs the threads on a new dictionary of the kind, and returns the throughput, in millions of calls per second.
+    private static double measure(boolean skipList, int threads, final int operations, final int keys)
+        throws InterruptedException {
+        dict = skipList ? new SkipList() : new AVLTree();
+        locked = !skipList;
+        held = new boolean[threads][keys][SLOTS];
+        final int n = threads;
+        Thread workers[] = new Thread[threads];
+        for(int t = 0; t < threads; t++){
+            final int id = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() { SkipListBenchmark.run(id, n, operations, keys); }
+            });
+        }
+        long startTime = System.nanoTime();
+        for(Thread w : workers) w.start();
+        for(Thread w : workers) w.join();
+        long elapsed = System.nanoTime() - startTime;
+
+        if(failure == null){
+            if(!dict.sanity()) fail("dictionary not sane at the end");
+            int expected = 0, found = 0;
+            for(boolean mine[][] : held) for(boolean slots[] : mine) for(boolean h : slots) if(h) expected++;
+            for(Dictionary d = dict.getFirst(); (d != null) && (failure == null); d = d.getNext()){
+                found++;
+                int id = d.address % threads, j = d.address / threads;
+                if((d.key < 0) || (d.key >= keys) || (j >= SLOTS) || !held[id][d.key][j]){
+                    fail("unexpected entry (" + d.address + ", " + d.key + ") at the end");
+                }
+            }
+            if((failure == null) && (found != expected)) fail(found + " entries at the end instead of " + expected);
+        }
+        return (double)threads * operations / (elapsed / 1e3);
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int operations = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+        int keys = (args.length > 2) ? Integer.parseInt(args[2]) : 1024;
+
+        // A shorter warm-up round of both first, so that neither is timed while it is being compiled
+        measure(true, threads, operations / 10, keys);
+        measure(false, threads, operations / 10, keys);
+        double lockFree = measure(true, threads, operations, keys);
+        double avl = measure(false, threads, operations, keys);
+        if(failure == null){
+            System.out.printf("%d threads, %d keys: SkipList %.2f, ", threads, keys, lockFree);
+            System.out.printf("synchronized AVLTree %.2f", avl);
+            System.out.println(" million calls per second");
+        }
+        System.out.println((failure == null) ? "stress ok" : "FAILED: " + failure);
+        if(failure != null) System.exit(1);
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Class: Snapshot
+// Compact binary dump of the blocks of an allocator (freeBlk and allocBlk), optionally with the contents of the
+// allocated blocks, and restore of such a dump into a new A2DynamicMem.
+// Format (every number is an unsigned LEB128 varint: 7 bits per byte, low bits first, high bit set if more follow):
+//     MAGIC, VERSION, capacity, flags (bit 0: payload), number of blocks
+//     per block, in address order: gap, (size << 1) | allocated, then the size bytes of the block if it is allocated
+//     and the snapshot has a payload
+// gap is the distance from the end of the previous block. The blocks of freeBlk and allocBlk tile the memory, so gap
+// is 0 and a block of size < 64 takes 2 bytes. Free memory in no dictionary (e.g. the free lists of BuddyDynamicMem)
+// shows up as gaps, which are restored as free blocks.
+// Write sorts the blocks by address, and Read sorts the free blocks by size and builds the trees directly (Tree.Build):
+// TC => O(n logn) each for n blocks, plus the payload. Both stream through a buffer of their own, never holding the
+// encoded snapshot.
+// Only allocators whose allocBlk holds every allocated block can be written: they opt in with
+// keepsBlocksInDictionaries. The others (TLSFDynamicMem, ArenaDynamicMem, ConcurrentDynamicMem,
+// SegregatedDynamicMem) would lose allocated blocks, or leak free ones, and are rejected.
+
+public class Snapshot {
+
+    private final static int MAGIC = 0x444d5353;        // "DMSS"
+    private final static int VERSION = 1;
+    private final static int PAYLOAD = 1;               // Flag: the contents of the allocated blocks follow them
+    private final static int BUFFER = 1 << 16;
+
+    // Buffered varint output.
+    private static final class Out {
+        final OutputStream out;
+        final byte buf[] = new byte[BUFFER];
+        int n;
+
+        Out(OutputStream out){ this.out = out; }
+
+        void varint(long v) throws IOException {
+            if(n > BUFFER - 10) flush();
+            while((v & ~0x7fL) != 0){
+                buf[n++] = (byte)((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[n++] = (byte)v;
+        }
+
+        // Writes length bytes of src from index from.
+        void bytes(ByteBuffer src, int from, int length) throws IOException {
+            while(length > 0){
+                if(n == BUFFER) flush();
+                int k = Math.min(length, BUFFER - n);
+                src.get(from, buf, n, k);
+                n += k;
+                from += k;
+                length -= k;
+            }
+        }
+
+        void flush() throws IOException {
+            out.write(buf, 0, n);
+            n = 0;
+        }
+    }
+
+    // Buffered varint input.
+    private static final class In {
+        final InputStream in;
+        final byte buf[] = new byte[BUFFER];
+        int n, pos;
+
+        In(InputStream in){ this.in = in; }
+
+        private void refill() throws IOException {
+            n = in.read(buf, 0, BUFFER);
+            pos = 0;
+            if(n <= 0){
+                n = 0;
+                throw new IOException("truncated snapshot");
+            }
+        }
+
+        private int read() throws IOException {
+            if(pos == n) refill();
+            return buf[pos++] & 0xff;
+        }
+
+        long varint() throws IOException {
+            long v = 0;
+            for(int shift = 0; shift < 64; shift += 7){
+                int b = read();
+                v |= (long)(b & 0x7f) << shift;
+                if(b < 0x80) return v;
+            }
+            throw new IOException("corrupt snapshot: varint too long");
+        }
+
+        // Reads a varint which must be in [0, max].
+        int bounded(long max) throws IOException {
+            long v = varint();
+            if((v < 0) || (v > max)) throw new IOException("corrupt snapshot: " + v + " out of range");
+            return (int)v;
+        }
+
+        // Reads length bytes into dst from index to.
+        void bytes(ByteBuffer dst, int to, int length) throws IOException {
+            while(length > 0){
+                if(pos == n) refill();
+                int k = Math.min(length, n - pos);
+                dst.put(to, buf, pos, k);
+                pos += k;
+                to += k;
+                length -= k;
+            }
+        }
+    }
+
+    // Writes the blocks of mem, and the contents of its allocated blocks if payload is true. out is not closed.
+    public static void Write(DynamicMem mem, OutputStream out, boolean payload) throws IOException {
+        if(!mem.keepsBlocksInDictionaries()){
+            throw new IllegalArgumentException(mem.getClass().getName() + " does not keep its blocks in freeBlk and " +
+                "allocBlk");
+        }
+        // Each block is packed in a long as (address, size, allocated), so that sorting sorts the blocks by address
+        long blocks[] = new long[64];
+        int n = 0;
+        for(int pass = 0; pass < 2; pass++){
+            Dictionary d = (pass == 0) ? mem.freeBlk : mem.allocBlk;
+            for(Dictionary current = d.getFirst(); current != null; current = current.getNext()){
+                if(n == blocks.length) blocks = Arrays.copyOf(blocks, 2*n);
+                blocks[n++] = ((long)current.address << 32) | ((long)current.size << 1) | pass;
+            }
+        }
+        Arrays.sort(blocks, 0, n);
+        Out o = new Out(out);
+        ByteBuffer contents = mem.contents();
+        o.varint(MAGIC);
+        o.varint(VERSION);
+        o.varint(mem.capacity());
+        o.varint(payload ? PAYLOAD : 0);
+        o.varint(n);
+        long end = 0;                                   // End of the previous block
+        for(int i = 0; i < n; i++){
+            int address = (int)(blocks[i] >>> 32), size = (int)((blocks[i] & 0xffffffffL) >>> 1);
+            boolean allocated = (blocks[i] & 1) != 0;
+            if(address < end) throw new IllegalArgumentException("overlapping blocks at " + address);
+            o.varint(address - end);
+            o.varint(blocks[i] & 0xffffffffL);
+            if(allocated && payload) o.bytes(contents, address, size);
+            end = (long)address + size;
+        }
+        o.flush();
+    }
+
+    // Reads a snapshot into a new A2DynamicMem with the given dictionary types, and returns it.
+    public static A2DynamicMem Read(InputStream in, int dict_type, int alloc_type) throws IOException {
+        In i = new In(in);
+        if((i.varint() != MAGIC) || (i.varint() != VERSION)) throw new IOException("not a snapshot");
+        int capacity = i.bounded(Integer.MAX_VALUE);
+        boolean payload = (i.bounded(PAYLOAD) & PAYLOAD) != 0;
+        int n = i.bounded(capacity);
+        A2DynamicMem mem = new A2DynamicMem(capacity, dict_type, alloc_type);
+        ByteBuffer contents = mem.contents();
+        int allocAddress[] = new int[16], allocSize[] = new int[16], m = 0;
+        long free[] = new long[16];                     // (size << 32) | address, to sort the free blocks by size
+        int f = 0;
+        int end = 0;
+        for(int k = 0; k <= n; k++){
+            int gap = (k < n) ? i.bounded(capacity - end) : capacity - end;
+            if(gap > 0){
+                if(f == free.length) free = Arrays.copyOf(free, 2*f);
+                free[f++] = ((long)gap << 32) | end;
+                end += gap;
+            }
+            if(k == n) break;
+            long packed = i.varint();
+            if((packed < 2) || ((packed >>> 1) > capacity - end)) throw new IOException("corrupt snapshot: block " + k);
+            int size = (int)(packed >>> 1);
+            if((packed & 1) != 0){
+                if(m == allocAddress.length){
+                    allocAddress = Arrays.copyOf(allocAddress, 2*m);
+                    allocSize = Arrays.copyOf(allocSize, 2*m);
+                }
+                allocAddress[m] = end;
+                allocSize[m++] = size;
+                if(payload) i.bytes(contents, end, size);
+            }
+            else{
+                if(f == free.length) free = Arrays.copyOf(free, 2*f);
+                free[f++] = ((long)size << 32) | end;
+            }
+            end += size;
+        }
+        Arrays.sort(free, 0, f);
+        int freeAddress[] = new int[f], freeSize[] = new int[f];
+        for(int k = 0; k < f; k++){
+            freeSize[k] = (int)(free[k] >>> 32);
+            freeAddress[k] = (int)free[k];
+        }
+        mem.freeBlk.Delete(mem.freeBlk.getFirst());     // The block inserted by the constructor of DynamicMem
+        DynamicMem.fill(mem.freeBlk, freeAddress, freeSize, freeSize, f);
+        DynamicMem.fill(mem.allocBlk, allocAddress, allocSize, allocAddress, m);
+        return mem;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Class: SnapshotCheck
+// Round trip check of Snapshot.
+//     java SnapshotCheck [operations]
+// For every allocator of Driver which opts in (keepsBlocksInDictionaries) and every dictionary type, runs random
+// Allocate and Free calls (default 20000), writing a pattern in every allocated block, then writes a snapshot with and
+// without payload, reads it back and checks that:
+//     the restored allocator has the same capacity and exactly the same allocated blocks (address and size);
+//     its free blocks and allocated blocks tile the memory;
+//     with payload, every allocated block holds its pattern;
+//     once every block is freed and the memory defragmented, the whole memory can be allocated again.
+// The allocators which do not opt in must be rejected by Snapshot.Write.
+
+public class SnapshotCheck {
+
+    private final static int SIZE = 300000;
+    private final static String ALLOCATORS[] = {"a2", "coalescing", "compacting", "deferred", "firstfit", "nextfit",
+        "bestfit", "worstfit", "buddy"};
+    private final static String REJECTED[] = {"segregated", "concurrent", "arena", "tlsf"};
+
+    private static void fail(String message){
+        System.out.println("FAILED: " + message);
+        System.exit(1);
+    }
+
+    // Pattern of byte i of the block at address.
+    private static byte pattern(int address, int i){
+        return (byte)(address * 31 + i);
+    }
+
+    // Runs a random workload on mem, and returns its allocated blocks.
+    private static TreeMap<Integer, Integer> fill(DynamicMem mem, Random random, int operations){
+        TreeMap<Integer, Integer> live = new TreeMap<Integer, Integer>();
+        ArrayList<Integer> addresses = new ArrayList<Integer>();
+        for(int i = 0; i < operations; i++){
+            if((random.nextInt(3) > 0) || addresses.isEmpty()){
+                int blockSize = 1 + random.nextInt((random.nextInt(8) == 0) ? 3000 : 60);
+                int address = mem.Allocate(blockSize);
+                if(address == -1) continue;
+                for(int j = 0; j < blockSize; j++) mem.putByte(address, j, pattern(address, j));
+                live.put(address, blockSize);
+                addresses.add(address);
+            }
+            else{
+                int k = random.nextInt(addresses.size()), address = addresses.get(k);
+                addresses.set(k, addresses.get(addresses.size() - 1));
+                addresses.remove(addresses.size() - 1);
+                live.remove(address);
+                mem.Free(address);
+            }
+        }
+        return live;
+    }
+
+    private static void check(String name, int type, DynamicMem mem, TreeMap<Integer, Integer> live, boolean payload)
+        throws IOException {
+        String what = name + ", dict_type " + type + (payload ? ", payload" : "") + ": ";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.Write(mem, out, payload);
+        A2DynamicMem copy = Snapshot.Read(new ByteArrayInputStream(out.toByteArray()), type, type);
+        if(copy.capacity() != SIZE) fail(what + "capacity " + copy.capacity());
+        int n = 0;
+        long used = 0;
+        for(Dictionary d = copy.allocBlk.getFirst(); d != null; d = d.getNext()){
+            n++;
+            used += d.size;
+            if(d.size != mem.BlockSize(d.address)) fail(what + "block at " + d.address + " differs");
+        }
+        if(n != live.size()) fail(what + n + " allocated blocks instead of " + live.size());
+        long free = 0;
+        for(Dictionary d = copy.freeBlk.getFirst(); d != null; d = d.getNext()) free += d.size;
+        if(free + used != SIZE) fail(what + free + " free and " + used + " allocated addresses out of " + SIZE);
+        if(payload){
+            for(int address : live.keySet()){
+                for(int j = 0; j < live.get(address); j++){
+                    if(copy.getByte(address, j) != pattern(address, j)) fail(what + "contents at " + address);
+                }
+            }
+        }
+        for(int address : live.keySet()) if(copy.Free(address) != 0) fail(what + "Free(" + address + ")");
+        copy.Defragment();
+        if((type > 1) && (copy.Allocate(SIZE) != 0)) fail(what + "the whole memory cannot be allocated");
+    }
+
+    public static void main(String args[]) throws IOException {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        for(String name : ALLOCATORS){
+            for(int type : new int[]{1, 2, 3, 4, 6, 7, 8}){
+                DynamicMem mem = Driver.newAllocator(name, SIZE, type, type);
+                TreeMap<Integer, Integer> live = fill(mem, new Random(type), operations);
+                check(name, type, mem, live, false);
+                check(name, type, mem, live, true);
+            }
+        }
+        for(String name : REJECTED){
+            DynamicMem mem = Driver.newAllocator(name, SIZE, 3, 3);
+            fill(mem, new Random(1), 100);
+            try{
+                Snapshot.Write(mem, new ByteArrayOutputStream(), true);
+                fail(name + " was written");
+            }
+            catch(IllegalArgumentException e){
+            }
+        }
+        System.out.println("check ok");
+    }
+}
@@ -0,0 +1,260 @@
+// Class: SplayTree
+// Self-adjusting binary search tree implementing Tree, ordered by key and then by address like the other trees.
+// Every Insert, Find and Delete splays the node it reaches to the root, by rotations along its path. Keys that are
+// used again soon stay near the root: with LIFO frees and a few dominant sizes, most operations end after a few steps.
+// Any sequence of m operations takes O((m + n) log n) time, i.e. O(log n) amortized per operation.
+
+// The tree itself is the SplayTree created by the public constructor, and plays the role of the sentinel node: it
+// holds the root, and the root has no parent. Every node points to its sentinel, so no operation walks up to find it.
+// Deleted nodes are detached from the sentinel, and handed to its NodePool for reuse like in BSTree.
+
+public class SplayTree extends Tree {
+
+    private SplayTree left, right;  // Children.
+    private SplayTree parent;       // Parent pointer. Null for the root.
+    private SplayTree tree;         // The sentinel of the tree, null for a deleted node.
+    private SplayTree root;         // Only set in the sentinel: the root of the tree.
+    private NodePool pool;          // Pool of deleted nodes. Only set in the sentinel node.
+
+    public SplayTree() {
+        super();
+        tree = this;
+        pool = new NodePool();
+    }
+
+    public SplayTree(int address, int size, int key) {
+        super(address, size, key);
+    }
+
+    // Helper functions below :
+
+    // Compares node a with (key, address), ordering by key and then by address. TC => O(1).
+    private static int compare(SplayTree a, int key, int address){
+        if(a.key > key) return 1;
+        if(a.key < key) return -1;
+        if(a.address > address) return 1;
+        if(a.address < address) return -1;
+        return 0;
+    }
+
+    // Returns the pool of deleted nodes of this tree, to tune its capacity or read its hit/miss counters.
+    public NodePool getPool(){
+        return tree.pool;
+    }
+
+    // Returns a node of this tree holding the entry, reusing a node of the pool if there is one. TC => O(1).
+    private SplayTree newNode(int address, int size, int key){
+        SplayTree node = (SplayTree)tree.pool.take();
+        if(node == null) node = new SplayTree(address, size, key);
+        else{
+            node.address = address;
+            node.size = size;
+            node.key = key;
+        }
+        node.tree = tree;
+        return node;
+    }
+
+    // De-allocates a deleted node and hands it to the pool. TC => O(1)
+    private void recycle(SplayTree a){
+        SplayTree sentinel = tree;
+        a.left = a.right = a.parent = a.tree = null;
+        a.size = a.address = a.key = 0;
+        sentinel.pool.give(a);
+    }
+
+    // Rotates x above its parent. TC => O(1).
+    private void rotate(SplayTree x){
+        SplayTree p = x.parent, g = p.parent;
+        if(p.left == x){
+            p.left = x.right;
+            if(x.right != null) x.right.parent = p;
+            x.right = p;
+        }
+        else{
+            p.right = x.left;
+            if(x.left != null) x.left.parent = p;
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+        if(g == null) tree.root = x;
+        else if(g.left == p) g.left = x;
+        else g.right = x;
+    }
+
+    // Moves x to the root by zig-zig and zig-zag steps (and a last zig). TC => O(depth of x).
+    private void splay(SplayTree x){
+        while(x.parent != null){
+            SplayTree p = x.parent, g = p.parent;
+            if(g != null) rotate(((g.left == p) == (p.left == x)) ? p : x);
+            rotate(x);
+        }
+    }
+
+    // Unlinks node x from the tree: splays it to the root and joins its two subtrees. TC => O(logn) amortized.
+    private void remove(SplayTree x){
+        splay(x);
+        SplayTree l = x.left, r = x.right;
+        if(l == null){
+            tree.root = r;
+            if(r != null) r.parent = null;
+        }
+        else{
+            // The largest node of the left subtree becomes the root, with the right subtree on its right
+            l.parent = null;
+            tree.root = l;
+            SplayTree m = l;
+            while(m.right != null) m = m.right;
+            splay(m);
+            m.right = r;
+            if(r != null) r.parent = m;
+        }
+        recycle(x);
+    }
+
+    // Returns the leftmost node of the subtree of a. TC => O(height).
+    private static SplayTree min(SplayTree a){
+        if(a == null) return null;
+        while(a.left != null) a = a.left;
+        return a;
+    }
+
+    // Builds a perfectly balanced subtree out of the sorted entries [lo, hi), and returns its root. TC => O(hi - lo).
+    private SplayTree build(int address[], int size[], int key[], int lo, int hi, SplayTree parent){
+        if(lo >= hi) return null;
+        int mid = (lo + hi) >>> 1;
+        SplayTree node = newNode(address[mid], size[mid], key[mid]);
+        node.parent = parent;
+        node.left = build(address, size, key, lo, mid, node);
+        node.right = build(address, size, key, mid+1, hi, node);
+        return node;
+    }
+
+    // End of helper functions. Main functions defined below :
+
+    // Inserts the entry and splays it to the root. Returns null (and splays the existing node) if an entry with the
+    // same key and address is already present. TC => O(logn) amortized.
+    public SplayTree Insert(int address, int size, int key)
+    {
+        if(tree == null) return null;                   // Deleted node
+        SplayTree current = tree.root, p = null;
+        int com = 0;
+        while(current != null){
+            com = compare(current, key, address);
+            if(com == 0){                               // Node already present in the tree
+                splay(current);
+                return null;
+            }
+            p = current;
+            current = (com == 1) ? current.left : current.right;
+        }
+        SplayTree node = newNode(address, size, key);
+        node.parent = p;
+        if(p == null) tree.root = node;
+        else if(com == 1) p.left = node;
+        else p.right = node;
+        splay(node);
+        return node;
+    }
+
+    // Deletes the entry with the same key, address and size as e. TC => O(logn) amortized.
+    public boolean Delete(Dictionary e)
+    {
+        if((e == null) || (tree == null)) return false;
+        SplayTree current = tree.root, last = null;
+        while(current != null){
+            last = current;
+            int com = compare(current, e.key, e.address);
+            if(com == 0){
+                if(current.size != e.size) break;
+                remove(current);
+                return true;
+            }
+            current = (com == 1) ? current.left : current.right;
+        }
+        if(last != null) splay(last);
+        return false;
+    }
+
+    // Deletes the node d directly, without searching for it. d must be a node of this tree. TC => O(logn) amortized.
+    public boolean DeleteNode(Dictionary d)
+    {
+        if(!(d instanceof SplayTree)) return false;
+        SplayTree x = (SplayTree)d;
+        if((tree == null) || (x.tree != tree) || (x == tree)) return false;
+        remove(x);
+        return true;
+    }
+
+    // Same search as AVLTree.Find: the exact search returns the node with key = k and the smallest address, the
+    // approximate search returns the smallest node with key >= k. The node found (or the last node visited) is
+    // splayed to the root. TC => O(logn) amortized.
+    public SplayTree Find(int k, boolean exact)
+    {
+        if(tree == null) return null;
+        SplayTree current = tree.root, last = null, store = null;
+        while(current != null){
+            last = current;
+            if(current.key < k) current = current.right;
+            else{
+                if(!exact || (current.key == k)) store = current;
+                current = current.left;
+            }
+        }
+        if(store != null) splay(store);
+        else if(last != null) splay(last);
+        return store;
+    }
+
+    // Nodes of the tree, for TreeIterator. TC => O(1).
+    protected SplayTree rootNode() { return (tree != null) ? tree.root : null; }
+
+    protected SplayTree leftNode() { return left; }
+
+    protected SplayTree rightNode() { return right; }
+
+    protected boolean isLinked() { return true; }
+
+    // The traversal does not splay, so that it does not change the tree it walks through.
+    public SplayTree getFirst()
+    {
+        if(tree == null) return null;
+        return min(tree.root);
+    }
+
+    public SplayTree getNext()
+    {
+        if((tree == null) || (this == tree)) return null;   // Deleted node, or getNext() called on the tree itself
+        if(right != null) return min(right);
+        SplayTree current = this;
+        while((current.parent != null) && (current.parent.right == current)) current = current.parent;
+        return current.parent;
+    }
+
+    public void Build(int address[], int size[], int key[], int n)
+    {
+        SplayTree sentinel = tree;
+        for(SplayTree a = getFirst(); a != null; ){
+            SplayTree next = a.getNext();
+            a.tree = null;                              // Old nodes are simply dropped
+            a = next;
+        }
+        sentinel.root = build(address, size, key, 0, n, null);
+    }
+
+    // Checks the links, the order of the nodes and that every node points to this sentinel. TC => O(n).
+    public boolean sanity()
+    {
+        if((tree == null) || (tree.root != null && tree.root.parent != null)) return false;
+        SplayTree last = null;
+        // The order is checked strictly, so the traversal cannot run around a loop forever
+        for(SplayTree a = getFirst(); a != null; a = a.getNext()){
+            if(a.tree != tree) return false;
+            if(((a.left != null) && (a.left.parent != a)) || ((a.right != null) && (a.right.parent != a))) return false;
+            if((last != null) && (compare(a, last.key, last.address) != 1)) return false;
+            last = a;
+        }
+        return true;
+    }
+}
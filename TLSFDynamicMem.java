@@ -0,0 +1,197 @@
+// Class: TLSFDynamicMem
+// Two-Level Segregated Fit allocator implementing DynamicMem.
+// Free blocks are kept in segregated lists indexed by size class. The first level splits sizes by powers of two and
+// the second level splits every power-of-two range into SL_COUNT equal parts. Two bitmaps record which lists are
+// non-empty, so a suitable list is found with Integer.numberOfTrailingZeros in O(1), whatever the number of free blocks.
+// Allocate rounds the request up to the next size class, so that any block in the list found is large enough (good fit).
+// Free merges the block with its address neighbours using boundary tags, so Defragment has nothing left to do.
+
+// The boundary tags are kept in arrays indexed by address, next to Memory:
+//    tag[a]  = s if a free block of size s starts at a, -s if an allocated block of size s starts at a, 0 otherwise
+//    foot[e] = start address of the block whose last address is e
+// Blocks always tile the whole memory, so foot[a-1] is the left neighbour of the block at a.
+// freeBlk and allocBlk are not used by this allocator.
+
+public class TLSFDynamicMem extends DynamicMem {
+
+    private final static int SL_LOG2 = 4;                   // log2 of the number of second level classes
+    private final static int SL_COUNT = 1 << SL_LOG2;       // Second level classes per first level class
+    private final static int SMALL_BLOCK = 1 << SL_LOG2;    // Sizes below this are all in first level class 0
+    private final static int FL_COUNT = 32 - SL_LOG2 + 1;   // Number of first level classes
+
+    private int limit;                  // Size of the managed memory
+    private int flMap;                  // Bit f is set iff some list of first level class f is non-empty
+    private int slMap[];                // Bit s of slMap[f] is set iff the list (f, s) is non-empty
+    private int head[];                 // head[f*SL_COUNT + s] is the first free block of the list (f, s), -1 if empty
+    private int nextFree[];             // Links of the free block starting at an address, in the list of its class
+    private int prevFree[];
+    private int tag[];                  // Boundary tags, see above
+    private int foot[];
+
+    private int fl, sl;                 // Output of mapping(), the class of the last size mapped
+
+    public TLSFDynamicMem() { this(M, 1); }
+
+    public TLSFDynamicMem(int size) { this(size, 1); }
+
+    public TLSFDynamicMem(int size, int dict_type) {
+        super(size, dict_type);
+        freeBlk.Delete(freeBlk.getFirst());     // The initial block is tracked by the segregated lists instead
+        limit = size;
+        slMap = new int[FL_COUNT];
+        head = new int[FL_COUNT * SL_COUNT];
+        for(int i = 0; i < head.length; i++) head[i] = -1;
+        nextFree = new int[size];
+        prevFree = new int[size];
+        tag = new int[size];
+        foot = new int[size];
+        if(size > 0) insertFree(0, size);
+    }
+
+    // Sets fl and sl to the class of the given size. TC => O(1).
+    private void mapping(int size){
+        if(size < SMALL_BLOCK){
+            fl = 0;
+            sl = size;
+        }
+        else{
+            int f = 31 - Integer.numberOfLeadingZeros(size);
+            sl = (size >>> (f - SL_LOG2)) ^ SL_COUNT;
+            fl = f - SL_LOG2 + 1;
+        }
+    }
+
+    // Makes a free block of the given size at address and inserts it in the list of its class. TC => O(1).
+    private void insertFree(int address, int size){
+        tag[address] = size;
+        foot[address + size - 1] = address;
+        mapping(size);
+        int i = fl*SL_COUNT + sl;
+        nextFree[address] = head[i];
+        prevFree[address] = -1;
+        if(head[i] != -1) prevFree[head[i]] = address;
+        head[i] = address;
+        slMap[fl] |= (1 << sl);
+        flMap |= (1 << fl);
+    }
+
+    // Unlinks the free block at address from the list of its class. TC => O(1).
+    private void removeFree(int address){
+        mapping(tag[address]);
+        int i = fl*SL_COUNT + sl;
+        int next = nextFree[address], prev = prevFree[address];
+        if(prev != -1) nextFree[prev] = next;
+        else head[i] = next;
+        if(next != -1) prevFree[next] = prev;
+        if(head[i] == -1){
+            slMap[fl] &= ~(1 << sl);
+            if(slMap[fl] == 0) flMap &= ~(1 << fl);
+        }
+    }
+
+    // Returns the first block of the first non-empty list of class >= (fl, sl), -1 if there is none. TC => O(1).
+    private int findSuitable(){
+        int slm = (sl < SL_COUNT) ? (slMap[fl] & (-1 << sl)) : 0;
+        if(slm == 0){
+            int flm = (fl + 1 < 32) ? (flMap & (-1 << (fl + 1))) : 0;
+            if(flm == 0) return -1;
+            fl = Integer.numberOfTrailingZeros(flm);
+            slm = slMap[fl];
+        }
+        sl = Integer.numberOfTrailingZeros(slm);
+        return head[fl*SL_COUNT + sl];
+    }
+
+    // Returns a free block of size >= blockSize, -1 if memory is not available. TC => O(1).
+    // The rounding skips the class of blockSize itself. Only the first block of that class is tried as well, so a
+    // request may fail while a large enough block sits further down that list: this is the rounding loss of TLSF,
+    // traded for a bounded time.
+    private int findBlock(int blockSize){
+        // Round up to the next class boundary, so that every block of the class found is large enough.
+        long rounded = blockSize;
+        if(blockSize >= SMALL_BLOCK) rounded += (1L << (31 - Integer.numberOfLeadingZeros(blockSize) - SL_LOG2)) - 1;
+        if(rounded <= limit){
+            mapping((int)rounded);
+            int address = findSuitable();
+            if(address != -1) return address;
+        }
+        mapping(blockSize);
+        int address = head[fl*SL_COUNT + sl];
+        return ((address != -1) && (tag[address] >= blockSize)) ? address : -1;
+    }
+
+    // Returns the start address of a block of size blockSize, -1 if memory is not available. TC => O(1).
+    public int Allocate(int blockSize) {
+        if((blockSize <= 0) || (blockSize > limit)) return -1;
+        int address = findBlock(blockSize);
+        if(address == -1) return -1;
+        int size = tag[address];
+        removeFree(address);
+        if(size > blockSize) insertFree(address + blockSize, size - blockSize);
+        tag[address] = -blockSize;
+        foot[address + blockSize - 1] = address;
+        return address;
+    }
+
+    // Frees the block starting at startAddr and merges it with its free neighbours.
+    // return 0 if successful, -1 otherwise. TC => O(1).
+    public int Free(int startAddr) {
+        if((startAddr < 0) || (startAddr >= limit) || (tag[startAddr] >= 0)) return -1;
+        int address = startAddr, size = -tag[startAddr];
+        int next = address + size;
+        if((next < limit) && (tag[next] > 0)){
+            removeFree(next);
+            size += tag[next];
+            tag[next] = 0;
+        }
+        if(address > 0){
+            int prev = foot[address - 1];
+            if(tag[prev] > 0){
+                removeFree(prev);
+                size += tag[prev];
+                tag[address] = 0;
+                address = prev;
+            }
+        }
+        insertFree(address, size);
+        return 0;
+    }
+
+    // The size of the block, as requested from Allocate, is in its boundary tag.
+    public int BlockSize(int startAddr) {
+        if((startAddr < 0) || (startAddr >= limit) || (tag[startAddr] >= 0)) return -1;
+        return -tag[startAddr];
+    }
+
+    // The tail becomes a free block, merged with the free block after it. TC => O(1).
+    protected boolean shrinkInPlace(int startAddr, int size, int newSize) {
+        int tail = size - newSize, next = startAddr + size;
+        if((next < limit) && (tag[next] > 0)){
+            removeFree(next);
+            tail += tag[next];
+            tag[next] = 0;
+        }
+        tag[startAddr] = -newSize;
+        foot[startAddr + newSize - 1] = startAddr;
+        insertFree(startAddr + newSize, tail);
+        return true;
+    }
+
+    // The block after the block is found from its boundary tag. TC => O(1).
+    protected boolean growInPlace(int startAddr, int size, int newSize) {
+        int next = startAddr + size;
+        if((next >= limit) || (tag[next] <= 0) || (tag[next] < newSize - size)) return false;
+        int total = size + tag[next];
+        removeFree(next);
+        tag[next] = 0;
+        tag[startAddr] = -newSize;
+        foot[startAddr + newSize - 1] = startAddr;
+        if(total > newSize) insertFree(startAddr + newSize, total - newSize);
+        return true;
+    }
+
+    // Free blocks are merged eagerly in Free, so there is never anything left to defragment.
+    public void Defragment() {
+        return ;
+    }
+}
@@ -59,8 +59,22 @@ public abstract class Tree extends Dictionary {
         // count = 0; for (d = dict.getFirst(); d != null; d = d.getNext()) count = count + 1;
         // After the above loop, count should contain the total number of elements in the dictionary.
 
+    public abstract void Build(int address[], int size[], int key[], int n);
+        // Replaces the contents of the tree with the n entries (address[i], size[i], key[i]), 0 <= i < n.
+        // The entries must already be sorted in increasing order of key, and of address for equal keys.
+        // Builds a perfectly balanced tree directly in O(n), instead of doing n calls to Insert.
+
     public abstract boolean sanity();
         // Checks the sanity of the BST subtree and returns true if sane, false otherwise
+
+    protected boolean isLinked() { return false; }
+    protected Tree rootNode() { return null; }
+    protected Tree leftNode() { return null; }
+    protected Tree rightNode() { return null; }
+        // Access to the nodes of a tree made of linked nodes, used by TreeIterator to walk it with a stack.
+        // isLinked() is true for such trees; rootNode() returns the root of the tree of the node it is called on
+        // (null if the tree is empty), leftNode() and rightNode() the children of the node (null if absent).
+        // Trees stored otherwise (BTree, ArrayAVLTree) keep the defaults, and are walked with Find and getNext.
 }
 
 
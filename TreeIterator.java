@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+// Class: TreeIterator
+// Reusable in-order iterator over a Tree, optionally restricted to the elements with lo <= key < hi.
+// It keeps the path of nodes still to be visited on an explicit stack, so a step never climbs parent pointers: every
+// node is pushed and popped once, and a scan of m elements costs O(log n + m), i.e. O(1) amortized per step.
+// The stack is kept between scans, so a scan allocates nothing once the stack is as deep as the tree.
+// Usage:
+//     for (d = it.first(tree); d != null; d = it.next()) ...
+//     for (d = it.first(tree, lo, hi); d != null; d = it.next()) ...
+// The tree must not be modified during a scan. Trees which are not made of linked nodes (see Tree.isLinked) are
+// scanned with Find and getNext instead.
+
+public class TreeIterator {
+
+    private Tree stack[] = new Tree[64];    // Nodes whose left subtree has been pushed, the next one on top
+    private int depth;                      // Number of nodes on the stack
+    private long hi;                        // Upper bound (exclusive) on the keys of the scan
+    private Tree current;                   // Trees scanned with getNext: the element returned last
+
+    private void push(Tree a){
+        if(depth == stack.length) stack = Arrays.copyOf(stack, 2 * depth);
+        stack[depth++] = a;
+    }
+
+    // Returns a, or null (ending the scan) if a is past the upper bound. TC => O(1).
+    private Tree bound(Tree a){
+        if((a != null) && (a.key >= hi)){
+            while(depth > 0) stack[--depth] = null;
+            current = null;
+            return null;
+        }
+        return a;
+    }
+
+    // Starts a scan of the whole tree and returns its first element, null if the tree is empty. TC => O(logn).
+    public Tree first(Tree t){
+        return start(t, Integer.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Starts a scan of the elements with lo <= key < hi and returns the first one, null if there is none.
+    // TC => O(logn).
+    public Tree first(Tree t, int lo, int hi){
+        return start(t, lo, hi);
+    }
+
+    private Tree start(Tree t, int lo, long hi){
+        while(depth > 0) stack[--depth] = null;
+        this.hi = hi;
+        current = null;
+        if(!t.isLinked()){
+            current = (lo == Integer.MIN_VALUE) ? t.getFirst() : t.Find(lo, false);
+            return bound(current);
+        }
+        // Push the path to the first node with key >= lo: the nodes at which it goes left
+        for(Tree a = t.rootNode(); a != null; ){
+            if(a.key >= lo){
+                push(a);
+                a = a.leftNode();
+            }
+            else a = a.rightNode();
+        }
+        return next();
+    }
+
+    // Returns the next element of the scan, null once it is over. TC => O(1) amortized.
+    public Tree next(){
+        if(current != null){
+            current = current.getNext();
+            return bound(current);
+        }
+        if(depth == 0) return null;
+        Tree a = stack[--depth];
+        stack[depth] = null;
+        for(Tree b = a.rightNode(); b != null; b = b.leftNode()) push(b);
+        return bound(a);
+    }
+}